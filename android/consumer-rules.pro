@@ -0,0 +1,11 @@
+# Consumer R8 / ProGuard rules, applied to apps that depend on this library.
+#
+# Only the bridge entry points need to survive shrinking: React Native looks up @ReactMethod
+# methods of RNOneSignal by reflection. Everything else in com.geektime.rnonesignalandroid is
+# reached through regular code paths, or through the app manifest for
+# NotificationNotDisplayingExtender (aapt generates that keep rule), so R8 is free to shrink,
+# inline and obfuscate it.
+
+-keepclassmembers class com.geektime.rnonesignalandroid.RNOneSignal {
+    @com.facebook.react.bridge.ReactMethod <methods>;
+}
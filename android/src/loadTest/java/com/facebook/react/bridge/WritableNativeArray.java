@@ -0,0 +1,7 @@
+package com.facebook.react.bridge;
+
+/**
+ * JVM replacement for React Native's WritableNativeArray, see WritableNativeMap.
+ */
+public class WritableNativeArray extends JavaOnlyArray {
+}
@@ -0,0 +1,9 @@
+package com.facebook.react.bridge;
+
+/**
+ * JVM replacement for React Native's WritableNativeMap, the real one is backed by the native bridge
+ * library. Shadows it on the unit test classpath so Arguments.createMap() and the module's converters
+ * work in the load harness.
+ */
+public class WritableNativeMap extends JavaOnlyMap {
+}
@@ -0,0 +1,30 @@
+package com.geektime.rnonesignalandroid;
+
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the events that reach JS instead of sending them over the bridge. Does not allocate, so the
+ * load harness only measures the module's own allocations.
+ */
+class FakeDeviceEventEmitter implements DeviceEventManagerModule.RCTDeviceEventEmitter {
+   private final AtomicInteger emittedCount = new AtomicInteger();
+
+   // Kept so the converted event can not be optimized away
+   private volatile Object lastData;
+
+   @Override
+   public void emit(String eventName, Object data) {
+      lastData = data;
+      emittedCount.incrementAndGet();
+   }
+
+   int getEmittedCount() {
+      return emittedCount.get();
+   }
+
+   Object getLastData() {
+      return lastData;
+   }
+}
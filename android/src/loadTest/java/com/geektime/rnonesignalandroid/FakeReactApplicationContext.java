@@ -0,0 +1,38 @@
+package com.geektime.rnonesignalandroid;
+
+import android.content.ContextWrapper;
+
+import com.facebook.react.bridge.JavaScriptModule;
+import com.facebook.react.bridge.ReactApplicationContext;
+
+/**
+ * React context for the JVM load harness. JS modules resolve to a FakeDeviceEventEmitter and the
+ * catalyst instance can be switched off to make the module drop its events.
+ * Relies on unitTests.returnDefaultValues, the base context is an empty ContextWrapper.
+ */
+class FakeReactApplicationContext extends ReactApplicationContext {
+   private final FakeDeviceEventEmitter eventEmitter = new FakeDeviceEventEmitter();
+   private volatile boolean catalystInstanceActive = true;
+
+   FakeReactApplicationContext() {
+      super(new ContextWrapper(null));
+   }
+
+   FakeDeviceEventEmitter getEventEmitter() {
+      return eventEmitter;
+   }
+
+   void setCatalystInstanceActive(boolean active) {
+      this.catalystInstanceActive = active;
+   }
+
+   @Override
+   public boolean hasActiveCatalystInstance() {
+      return catalystInstanceActive;
+   }
+
+   @Override
+   public <T extends JavaScriptModule> T getJSModule(Class<T> jsInterface) {
+      return jsInterface.cast(eventEmitter);
+   }
+}
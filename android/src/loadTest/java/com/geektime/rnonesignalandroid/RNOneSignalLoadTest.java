@@ -0,0 +1,343 @@
+package com.geektime.rnonesignalandroid;
+
+import com.facebook.react.bridge.Callback;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.onesignal.OSNotification;
+import com.onesignal.OSNotificationAction;
+import com.onesignal.OSNotificationOpenResult;
+import com.onesignal.OSNotificationPayload;
+import com.onesignal.OneSignal;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM load harness for the native hot paths.
+ *
+ * Drives RNOneSignalCore the way the SDK does, through the handlers it registered with the local
+ * OneSignal stand-in, with a FakeReactApplicationContext in place of React. Every stream is run once to
+ * warm up and once measured, and prints its throughput, p50 / p99 latency, bytes allocated per event and
+ * dropped events. Latency is the time of one handler / module call, the fake emitter is synchronous so
+ * it covers conversion and emit.
+ *
+ * Not part of the regular unit tests, run it with ./gradlew test -PloadTest.
+ */
+public class RNOneSignalLoadTest {
+   private static final int EVENTS = 10000;
+   private static final int THREADS = 4;
+   private static final String APP_ID = "00000000-0000-0000-0000-000000000000";
+
+   private static RNOneSignalCore core;
+   private static FakeReactApplicationContext reactContext;
+   private static RNOneSignal module;
+
+   private static OSNotification[] notifications;
+   private static OSNotificationOpenResult[] openResults;
+
+   /**
+    * One synthetic stream. drive(i) sends event i, delivered() counts what made it to the other side
+    * (JS events, SDK calls or outcome callbacks).
+    */
+   private abstract static class Stream {
+      final String name;
+
+      Stream(String name) {
+         this.name = name;
+      }
+
+      abstract void drive(int i) throws Exception;
+
+      abstract int delivered();
+   }
+
+   private static class Result {
+      int dropped;
+   }
+
+   /**
+    * The pre-init storm has to run before anything initializes the process-wide core, so it is part of
+    * the class setup. The module is created after init, as it would look up the app id otherwise.
+    */
+   @BeforeClass
+   public static void setUp() throws JSONException {
+      core = RNOneSignalCore.getInstance();
+
+      int sdkCallsBefore = OneSignal.tagAndTriggerCalls.get();
+      for (int i = 0; i < EVENTS; i++) {
+         String key = "key" + (i % 20);
+         if (i % 4 == 0) {
+            core.deleteTag(key);
+            core.removeTriggersForKeys(Collections.singletonList(key));
+         } else {
+            core.sendTag(key, "value" + i);
+            core.addTriggers(Collections.<String, Object>singletonMap(key, i));
+         }
+      }
+      core.init(null, APP_ID);
+
+      int sdkCalls = OneSignal.tagAndTriggerCalls.get() - sdkCallsBefore;
+      System.out.println(String.format(Locale.US, "%-34s %6d calls replayed as %d SDK calls", "tag / trigger storm before init", EVENTS * 2, sdkCalls));
+      assertTrue("Buffered calls are replayed as one collapsed batch", sdkCalls <= 4);
+
+      reactContext = new FakeReactApplicationContext();
+      module = new RNOneSignal(reactContext);
+
+      notifications = new OSNotification[EVENTS];
+      openResults = new OSNotificationOpenResult[EVENTS];
+      for (int i = 0; i < EVENTS; i++) {
+         notifications[i] = notification(i);
+
+         OSNotificationOpenResult openResult = new OSNotificationOpenResult();
+         openResult.notification = notification(i);
+         openResult.action = new OSNotificationAction();
+         openResult.action.type = OSNotificationAction.ActionType.Opened;
+         openResults[i] = openResult;
+      }
+   }
+
+   private static OSNotification notification(int i) throws JSONException {
+      OSNotificationPayload payload = new OSNotificationPayload();
+      payload.notificationID = "load-" + i;
+      payload.title = "Order " + i + " shipped";
+      payload.body = "Your order is on its way and should arrive tomorrow.";
+      payload.groupKey = "orders-" + (i % 10);
+      payload.additionalData = new JSONObject()
+              .put("orderId", i)
+              .put("campaign", "load")
+              .put("deepLink", "app://orders/" + i);
+      payload.rawPayload = new JSONObject().put("google.sent_time", System.currentTimeMillis()).toString();
+
+      OSNotification notification = new OSNotification();
+      notification.payload = payload;
+      notification.androidNotificationId = i;
+      notification.displayType = OSNotification.DisplayType.Notification;
+      notification.isAppInFocus = true;
+      notification.shown = true;
+      return notification;
+   }
+
+   @After
+   public void restoreDefaults() {
+      core.setCompactEventEncoding(false);
+      core.setLightweightReceivedEvents(false, NotificationPayloadStore.DEFAULT_MAX_ENTRIES);
+      reactContext.setCatalystInstanceActive(true);
+   }
+
+   @Test
+   public void receivedNotifications() throws Exception {
+      assertEquals(0, run(receivedStream("received"), 1).dropped);
+   }
+
+   @Test
+   public void receivedNotificationsCompact() throws Exception {
+      core.setCompactEventEncoding(true);
+      assertEquals(0, run(receivedStream("received, compact"), 1).dropped);
+   }
+
+   @Test
+   public void receivedNotificationsLightweight() throws Exception {
+      core.setLightweightReceivedEvents(true, NotificationPayloadStore.DEFAULT_MAX_ENTRIES);
+      assertEquals(0, run(receivedStream("received, lightweight"), 1).dropped);
+   }
+
+   @Test
+   public void receivedNotificationsConcurrently() throws Exception {
+      assertEquals(0, run(receivedStream("received, " + THREADS + " threads"), THREADS).dropped);
+   }
+
+   @Test
+   public void receivedNotificationsWithoutCatalystInstance() throws Exception {
+      reactContext.setCatalystInstanceActive(false);
+      assertEquals(EVENTS, run(receivedStream("received, no catalyst instance"), 1).dropped);
+   }
+
+   @Test
+   public void openedNotifications() throws Exception {
+      module.initNotificationOpenedHandlerParams();
+
+      Stream opened = new Stream("opened") {
+         @Override
+         void drive(int i) {
+            OneSignal.notificationOpenedHandler.notificationOpened(openResults[i]);
+         }
+
+         @Override
+         int delivered() {
+            return reactContext.getEventEmitter().getEmittedCount();
+         }
+      };
+      assertEquals(0, run(opened, 1).dropped);
+   }
+
+   @Test
+   public void tagAndTriggerStorm() throws Exception {
+      final JavaOnlyMap tags = JavaOnlyMap.of("level", "10", "plan", "pro", "region", "eu");
+      final JavaOnlyMap triggers = JavaOnlyMap.of("level", 10, "screen", "checkout");
+
+      Stream storm = new Stream("tag / trigger storm") {
+         @Override
+         void drive(int i) {
+            String key = "key" + (i % 20);
+            switch (i % 6) {
+               case 0:
+                  module.sendTag(key, "value");
+                  break;
+               case 1:
+                  module.sendTags(tags);
+                  break;
+               case 2:
+                  module.deleteTag(key);
+                  break;
+               case 3:
+                  module.addTrigger(key, i);
+                  break;
+               case 4:
+                  module.addTriggers(triggers);
+                  break;
+               default:
+                  module.removeTriggerForKey(key);
+                  break;
+            }
+         }
+
+         @Override
+         int delivered() {
+            return OneSignal.tagAndTriggerCalls.get();
+         }
+      };
+      assertEquals(0, run(storm, 1).dropped);
+   }
+
+   @Test
+   public void outcomeFlood() throws Exception {
+      final AtomicInteger completed = new AtomicInteger();
+      final Callback callback = new Callback() {
+         @Override
+         public void invoke(Object... args) {
+            completed.incrementAndGet();
+         }
+      };
+
+      Stream outcomes = new Stream("outcome flood") {
+         @Override
+         void drive(int i) {
+            switch (i % 3) {
+               case 0:
+                  module.sendOutcome("purchase", callback);
+                  break;
+               case 1:
+                  module.sendUniqueOutcome("opened_checkout", callback);
+                  break;
+               default:
+                  module.sendOutcomeWithValue("revenue", 9.99f, callback);
+                  break;
+            }
+         }
+
+         @Override
+         int delivered() {
+            return completed.get();
+         }
+      };
+      assertEquals(0, run(outcomes, 1).dropped);
+   }
+
+   private static Stream receivedStream(String name) {
+      return new Stream(name) {
+         @Override
+         void drive(int i) {
+            OneSignal.notificationReceivedHandler.notificationReceived(notifications[i]);
+         }
+
+         @Override
+         int delivered() {
+            return reactContext.getEventEmitter().getEmittedCount();
+         }
+      };
+   }
+
+   private static Result run(Stream stream, int threads) throws Exception {
+      // Warm up so the numbers are not dominated by the interpreter
+      drive(stream, threads, new long[EVENTS], new long[threads]);
+
+      long[] latencies = new long[EVENTS];
+      long[] allocated = new long[threads];
+      int deliveredBefore = stream.delivered();
+
+      long start = System.nanoTime();
+      drive(stream, threads, latencies, allocated);
+      long elapsed = System.nanoTime() - start;
+
+      long allocatedTotal = 0;
+      for (long bytes : allocated)
+         allocatedTotal += bytes;
+
+      Result result = new Result();
+      result.dropped = EVENTS - (stream.delivered() - deliveredBefore);
+
+      Arrays.sort(latencies);
+      System.out.println(String.format(Locale.US,
+              "%-34s %6d events %10.0f events/s   p50 %7.1f us   p99 %7.1f us %7d B/event %6d dropped",
+              stream.name, EVENTS, EVENTS * 1e9 / elapsed,
+              percentile(latencies, 0.50) / 1e3, percentile(latencies, 0.99) / 1e3,
+              allocatedTotal / EVENTS, result.dropped));
+      return result;
+   }
+
+   // Each thread sends its own slice of the events
+   private static void drive(final Stream stream, int threads, final long[] latencies, final long[] allocated) throws Exception {
+      final int perThread = EVENTS / threads;
+      final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+      Thread[] workers = new Thread[threads];
+      for (int t = 0; t < threads; t++) {
+         final int worker = t;
+         workers[t] = new Thread(new Runnable() {
+            @Override
+            public void run() {
+               try {
+                  long allocatedBefore = allocatedBytes();
+                  for (int i = worker * perThread; i < (worker + 1) * perThread; i++) {
+                     long eventStart = System.nanoTime();
+                     stream.drive(i);
+                     latencies[i] = System.nanoTime() - eventStart;
+                  }
+                  allocated[worker] = allocatedBytes() - allocatedBefore;
+               } catch (Throwable t) {
+                  failure.compareAndSet(null, t);
+               }
+            }
+         });
+         workers[t].start();
+      }
+
+      for (Thread worker : workers)
+         worker.join();
+
+      if (failure.get() != null)
+         throw new AssertionError("Stream " + stream.name + " failed", failure.get());
+   }
+
+   private static long percentile(long[] sorted, double quantile) {
+      int index = (int) Math.ceil(quantile * sorted.length) - 1;
+      return sorted[Math.max(0, index)];
+   }
+
+   private static long allocatedBytes() {
+      com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+      return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+   }
+}
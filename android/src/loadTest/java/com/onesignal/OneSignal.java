@@ -0,0 +1,100 @@
+package com.onesignal;
+
+import android.content.Context;
+
+import org.json.JSONObject;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for the OneSignal SDK entry point, used by the JVM load harness.
+ *
+ * Test classes come first on the unit test classpath, so this class replaces the SDK's OneSignal while
+ * the SDK model classes (OSNotification, OSNotificationPayload, ...) stay the real ones. Only what the
+ * module calls on the paths the harness drives is declared. init keeps the handlers so notifications
+ * can be delivered the way the SDK does, tag / trigger calls are counted and outcomes complete right
+ * away without an event.
+ */
+public class OneSignal {
+   public static String sdkType;
+
+   public interface NotificationReceivedHandler {
+      void notificationReceived(OSNotification notification);
+   }
+
+   public interface NotificationOpenedHandler {
+      void notificationOpened(OSNotificationOpenResult result);
+   }
+
+   public interface InAppMessageClickHandler {
+      void inAppMessageClicked(OSInAppMessageAction result);
+   }
+
+   public interface OutcomeCallback {
+      void onSuccess(OutcomeEvent outcomeEvent);
+   }
+
+   public static class Builder {
+      public Builder setInAppMessageClickHandler(InAppMessageClickHandler handler) {
+         inAppMessageClickHandler = handler;
+         return this;
+      }
+   }
+
+   public static NotificationReceivedHandler notificationReceivedHandler;
+   public static NotificationOpenedHandler notificationOpenedHandler;
+   public static InAppMessageClickHandler inAppMessageClickHandler;
+
+   // Tag and trigger calls that reached the SDK
+   public static final AtomicInteger tagAndTriggerCalls = new AtomicInteger();
+
+   private static final Builder builder = new Builder();
+
+   public static Builder getCurrentOrNewInitBuilder() {
+      return builder;
+   }
+
+   public static void init(Context context, String googleProjectNumber, String oneSignalAppId,
+                           NotificationOpenedHandler openedHandler, NotificationReceivedHandler receivedHandler) {
+      notificationOpenedHandler = openedHandler;
+      notificationReceivedHandler = receivedHandler;
+   }
+
+   public static void sendTag(String key, String value) {
+      tagAndTriggerCalls.incrementAndGet();
+   }
+
+   public static void sendTags(JSONObject keyValues) {
+      tagAndTriggerCalls.incrementAndGet();
+   }
+
+   public static void deleteTag(String key) {
+      tagAndTriggerCalls.incrementAndGet();
+   }
+
+   public static void deleteTags(Collection<String> keys) {
+      tagAndTriggerCalls.incrementAndGet();
+   }
+
+   public static void addTriggers(Map<String, Object> triggers) {
+      tagAndTriggerCalls.incrementAndGet();
+   }
+
+   public static void removeTriggersForKeys(Collection<String> keys) {
+      tagAndTriggerCalls.incrementAndGet();
+   }
+
+   public static void sendOutcome(String name, OutcomeCallback callback) {
+      callback.onSuccess(null);
+   }
+
+   public static void sendUniqueOutcome(String name, OutcomeCallback callback) {
+      callback.onSuccess(null);
+   }
+
+   public static void sendOutcomeWithValue(String name, float value, OutcomeCallback callback) {
+      callback.onSuccess(null);
+   }
+}
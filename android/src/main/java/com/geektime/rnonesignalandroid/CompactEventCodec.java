@@ -0,0 +1,148 @@
+package com.geektime.rnonesignalandroid;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.onesignal.OSInAppMessageAction;
+import com.onesignal.OSNotification;
+import com.onesignal.OSNotificationOpenResult;
+import com.onesignal.OSNotificationPayload;
+
+import org.json.JSONObject;
+
+import java.util.List;
+
+/**
+ * Opt-in compact encoding for the high volume notification / in-app events.
+ *
+ * Instead of nested maps, events are sent as positional arrays, so the field names do not cross the
+ * bridge. additionalData (and the in-app message fields this layout does not know) is the only
+ * free-form part and is still sent as a map:
+ *    received:            [SCHEMA_VERSION, notification, lightweight]
+ *    opened:              [SCHEMA_VERSION, notification, actionID, actionType]
+ *    inAppMessageClicked: [SCHEMA_VERSION, click_name, click_url, first_click, closes_message, otherFields]
+ *    notification:        [isAppInFocus, shown, androidNotificationId, displayType, payload, groupedNotifications]
+ *    payload:             [notificationID, title, body, additionalData, smallIcon, largeIcon, bigPicture,
+ *                          smallIconAccentColor, launchURL, sound, ledColor, lockScreenVisibility, groupKey,
+ *                          groupMessage, actionButtons, fromProjectNumber, collapseId, priority, rawPayload]
+ *    actionButton:        [id, text, icon]
+ *    lightweight payload: [notificationID, title, body, groupKey]
+ * Missing values are sent as null. The decoder in index.js lists the same fields in the same order and
+ * drops events of any other SCHEMA_VERSION, bump it together with the decoder when the layout changes.
+ */
+class CompactEventCodec {
+   static final int SCHEMA_VERSION = 1;
+
+   private static final String[] IN_APP_MESSAGE_FIELDS = { "click_name", "click_url", "first_click", "closes_message" };
+
+   /**
+    * In lightweight mode the payload only carries the summary fields of NotificationView.toSummaryWritableMap().
+    */
+   static WritableArray encodeReceived(OSNotification notification, boolean lightweight) {
+      WritableArray encoded = Arguments.createArray();
+      encoded.pushInt(SCHEMA_VERSION);
+      encoded.pushArray(encodeNotification(notification, lightweight));
+      encoded.pushBoolean(lightweight);
+      return encoded;
+   }
+
+   static WritableArray encodeOpened(OSNotificationOpenResult result) {
+      WritableArray encoded = Arguments.createArray();
+      encoded.pushInt(SCHEMA_VERSION);
+      encoded.pushArray(encodeNotification(result.notification, false));
+      pushString(encoded, result.action.actionID);
+      encoded.pushInt(result.action.type.ordinal());
+      return encoded;
+   }
+
+   static WritableArray encodeInAppMessageClicked(OSInAppMessageAction action) {
+      // Low volume, read through the SDK's JSON so fields added by newer SDKs end up in otherFields
+      JSONObject json = action.toJSONObject();
+
+      WritableArray encoded = Arguments.createArray();
+      encoded.pushInt(SCHEMA_VERSION);
+      for (String field : IN_APP_MESSAGE_FIELDS) {
+         Object value = json.remove(field);
+         if (value instanceof Boolean)
+            encoded.pushBoolean((Boolean) value);
+         else
+            pushString(encoded, value instanceof String ? (String) value : null);
+      }
+      encoded.pushMap(RNUtils.jsonToWritableMap(json));
+      return encoded;
+   }
+
+   private static WritableArray encodeNotification(OSNotification notification, boolean summaryOnly) {
+      WritableArray encoded = Arguments.createArray();
+      encoded.pushBoolean(notification.isAppInFocus);
+      encoded.pushBoolean(notification.shown);
+      encoded.pushInt(notification.androidNotificationId);
+      encoded.pushInt(notification.displayType.ordinal());
+      encoded.pushArray(encodePayload(notification.payload, summaryOnly));
+
+      List<OSNotificationPayload> grouped = notification.groupedNotifications;
+      if (summaryOnly || grouped == null || grouped.isEmpty()) {
+         encoded.pushNull();
+      } else {
+         WritableArray payloads = Arguments.createArray();
+         for (OSNotificationPayload payload : grouped)
+            payloads.pushArray(encodePayload(payload, false));
+         encoded.pushArray(payloads);
+      }
+      return encoded;
+   }
+
+   private static WritableArray encodePayload(OSNotificationPayload payload, boolean summaryOnly) {
+      WritableArray encoded = Arguments.createArray();
+      pushString(encoded, payload.notificationID);
+      pushString(encoded, payload.title);
+      pushString(encoded, payload.body);
+
+      if (summaryOnly) {
+         pushString(encoded, payload.groupKey);
+         return encoded;
+      }
+
+      if (payload.additionalData != null)
+         encoded.pushMap(RNUtils.jsonToWritableMap(payload.additionalData));
+      else
+         encoded.pushNull();
+      pushString(encoded, payload.smallIcon);
+      pushString(encoded, payload.largeIcon);
+      pushString(encoded, payload.bigPicture);
+      pushString(encoded, payload.smallIconAccentColor);
+      pushString(encoded, payload.launchURL);
+      pushString(encoded, payload.sound);
+      pushString(encoded, payload.ledColor);
+      encoded.pushInt(payload.lockScreenVisibility);
+      pushString(encoded, payload.groupKey);
+      pushString(encoded, payload.groupMessage);
+
+      List<OSNotificationPayload.ActionButton> buttons = payload.actionButtons;
+      if (buttons == null || buttons.isEmpty()) {
+         encoded.pushNull();
+      } else {
+         WritableArray array = Arguments.createArray();
+         for (OSNotificationPayload.ActionButton button : buttons) {
+            WritableArray buttonArray = Arguments.createArray();
+            pushString(buttonArray, button.id);
+            pushString(buttonArray, button.text);
+            pushString(buttonArray, button.icon);
+            array.pushArray(buttonArray);
+         }
+         encoded.pushArray(array);
+      }
+
+      pushString(encoded, payload.fromProjectNumber);
+      pushString(encoded, payload.collapseId);
+      encoded.pushInt(payload.priority);
+      pushString(encoded, payload.rawPayload);
+      return encoded;
+   }
+
+   private static void pushString(WritableArray array, String value) {
+      if (value == null)
+         array.pushNull();
+      else
+         array.pushString(value);
+   }
+}
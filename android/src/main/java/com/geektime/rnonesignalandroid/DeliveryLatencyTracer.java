@@ -0,0 +1,188 @@
+package com.geektime.rnonesignalandroid;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Opt-in tracing of how long a received notification takes from the server to the JS handler.
+ *
+ * Each notification is stamped when it enters the NotificationNotDisplayingExtender, when the SDK
+ * calls notificationReceived, once the event is converted and once it is emitted. JS acknowledges
+ * with the time its listener ran. Every stage duration goes into its own histogram (microseconds):
+ *    fcm        server sent time (google.sent_time, when present) -> first native stamp
+ *    sdk        extender -> notificationReceived
+ *    conversion notificationReceived -> event converted
+ *    emit       event converted -> handed to the bridge
+ *    js         handed to the bridge -> JS listener
+ *    total      server sent time -> JS listener
+ * Stages with a missing stamp are skipped. Native stages use a monotonic clock, stages that cross
+ * into the server or JS use wall clock time and are only millisecond accurate.
+ */
+class DeliveryLatencyTracer {
+   // Un-acknowledged traces are dropped past this many
+   private static final int MAX_PENDING_TRACES = 200;
+
+   static final String STAGE_FCM = "fcm";
+   static final String STAGE_SDK = "sdk";
+   static final String STAGE_CONVERSION = "conversion";
+   static final String STAGE_EMIT = "emit";
+   static final String STAGE_JS = "js";
+   static final String STAGE_TOTAL = "total";
+
+   private static final String[] STAGES = { STAGE_FCM, STAGE_SDK, STAGE_CONVERSION, STAGE_EMIT, STAGE_JS, STAGE_TOTAL };
+
+   private static class Trace {
+      long sentAtMillis;
+      long extenderNanos;
+      long extenderAtMillis;
+      long receivedNanos;
+      long receivedAtMillis;
+      long convertedNanos;
+      long emittedNanos;
+      long emittedAtMillis;
+   }
+
+   private volatile boolean enabled = false;
+
+   private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+   private final LinkedHashMap<String, Trace> traces = new LinkedHashMap<String, Trace>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Trace> eldest) {
+         return size() > MAX_PENDING_TRACES;
+      }
+   };
+
+   DeliveryLatencyTracer() {
+      for (String stage : STAGES)
+         histograms.put(stage, new LatencyHistogram());
+   }
+
+   boolean isEnabled() {
+      return enabled;
+   }
+
+   synchronized void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+      if (!enabled)
+         traces.clear();
+   }
+
+   private Trace traceFor(String notificationId) {
+      Trace trace = traces.get(notificationId);
+      if (trace == null) {
+         trace = new Trace();
+         traces.put(notificationId, trace);
+      }
+      return trace;
+   }
+
+   // The mark methods sit on the emit path, enabled is checked before locking so a disabled
+   // tracer costs no monitor there, and again under the lock in case setEnabled(false) ran in between.
+
+   void markExtender(NotificationView view) {
+      if (!enabled || view.getNotificationId() == null)
+         return;
+
+      synchronized (this) {
+         if (!enabled)
+            return;
+
+         Trace trace = traceFor(view.getNotificationId());
+         trace.extenderNanos = System.nanoTime();
+         trace.extenderAtMillis = System.currentTimeMillis();
+         trace.sentAtMillis = view.getSentAtMillis();
+      }
+   }
+
+   void markReceived(NotificationView view) {
+      if (!enabled || view.getNotificationId() == null)
+         return;
+
+      synchronized (this) {
+         if (!enabled)
+            return;
+
+         Trace trace = traceFor(view.getNotificationId());
+         trace.receivedNanos = System.nanoTime();
+         trace.receivedAtMillis = System.currentTimeMillis();
+         trace.sentAtMillis = view.getSentAtMillis();
+      }
+   }
+
+   void markConverted(String notificationId) {
+      if (!enabled || notificationId == null)
+         return;
+
+      synchronized (this) {
+         Trace trace = traces.get(notificationId);
+         if (trace != null)
+            trace.convertedNanos = System.nanoTime();
+      }
+   }
+
+   void markEmitted(String notificationId) {
+      if (!enabled || notificationId == null)
+         return;
+
+      synchronized (this) {
+         Trace trace = traces.get(notificationId);
+         if (trace == null)
+            return;
+
+         trace.emittedNanos = System.nanoTime();
+         trace.emittedAtMillis = System.currentTimeMillis();
+      }
+   }
+
+   /**
+    * Final stamp, sent by JS with the wall clock time its listener ran. Records every stage.
+    */
+   synchronized void acknowledge(String notificationId, long jsReceivedAtMillis) {
+      if (!enabled || notificationId == null)
+         return;
+
+      Trace trace = traces.remove(notificationId);
+      if (trace == null)
+         return;
+
+      long firstNativeAtMillis = trace.extenderAtMillis > 0 ? trace.extenderAtMillis : trace.receivedAtMillis;
+      if (trace.sentAtMillis > 0 && firstNativeAtMillis > 0)
+         histograms.get(STAGE_FCM).record((firstNativeAtMillis - trace.sentAtMillis) * 1000);
+
+      if (trace.extenderNanos > 0 && trace.receivedNanos > 0)
+         histograms.get(STAGE_SDK).record((trace.receivedNanos - trace.extenderNanos) / 1000);
+
+      if (trace.receivedNanos > 0 && trace.convertedNanos > 0)
+         histograms.get(STAGE_CONVERSION).record((trace.convertedNanos - trace.receivedNanos) / 1000);
+
+      if (trace.convertedNanos > 0 && trace.emittedNanos > 0)
+         histograms.get(STAGE_EMIT).record((trace.emittedNanos - trace.convertedNanos) / 1000);
+
+      if (trace.emittedAtMillis > 0 && jsReceivedAtMillis > 0)
+         histograms.get(STAGE_JS).record((jsReceivedAtMillis - trace.emittedAtMillis) * 1000);
+
+      if (trace.sentAtMillis > 0 && jsReceivedAtMillis > 0)
+         histograms.get(STAGE_TOTAL).record((jsReceivedAtMillis - trace.sentAtMillis) * 1000);
+   }
+
+   synchronized void reset() {
+      traces.clear();
+      for (LatencyHistogram histogram : histograms.values())
+         histogram.reset();
+   }
+
+   synchronized WritableMap toWritableMap() {
+      WritableMap stages = Arguments.createMap();
+      for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet())
+         stages.putMap(entry.getKey(), entry.getValue().toWritableMap());
+
+      WritableMap result = Arguments.createMap();
+      result.putBoolean("enabled", enabled);
+      result.putInt("pendingTraces", traces.size());
+      result.putMap("stagesMicros", stages);
+      return result;
+   }
+}
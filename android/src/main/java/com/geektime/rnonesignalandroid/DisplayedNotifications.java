@@ -0,0 +1,148 @@
+package com.geektime.rnonesignalandroid;
+
+import android.annotation.TargetApi;
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.Build;
+import android.os.Bundle;
+import android.service.notification.StatusBarNotification;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.onesignal.OneSignal;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bulk queries and cancellation over the notifications currently in the shade, each done as a single
+ * native call. Reading the shade needs Android 6.0 (API 23). Below that list() returns nothing and
+ * cancelMatchingData() falls back to the notifications known to the payload store.
+ *
+ * Android does not tag notifications with the library that posted them, so only the notifications
+ * found in the payload store are treated as OneSignal ones. The store gets every notification
+ * received while the app process was alive, older ones are not reported.
+ */
+class DisplayedNotifications {
+
+   @TargetApi(Build.VERSION_CODES.M)
+   private static StatusBarNotification[] activeNotifications(Context context) {
+      NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+      if (notificationManager == null)
+         return null;
+
+      return notificationManager.getActiveNotifications();
+   }
+
+   static WritableArray list(Context context, NotificationPayloadStore payloadStore) {
+      WritableArray result = Arguments.createArray();
+
+      if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M)
+         return result;
+
+      StatusBarNotification[] active = activeNotifications(context);
+      if (active == null)
+         return result;
+
+      for (StatusBarNotification statusBarNotification : active) {
+         NotificationView known = payloadStore.getByAndroidNotificationId(statusBarNotification.getId());
+         if (known == null)
+            continue;
+
+         Notification notification = statusBarNotification.getNotification();
+         Bundle extras = notification.extras;
+
+         WritableMap item = Arguments.createMap();
+         item.putInt("androidNotificationId", statusBarNotification.getId());
+         item.putString("groupKey", notification.getGroup());
+         item.putBoolean("isGroupSummary", (notification.flags & Notification.FLAG_GROUP_SUMMARY) != 0);
+         item.putDouble("postTime", statusBarNotification.getPostTime());
+         if (extras != null) {
+            CharSequence title = extras.getCharSequence(Notification.EXTRA_TITLE);
+            CharSequence body = extras.getCharSequence(Notification.EXTRA_TEXT);
+            item.putString("title", title == null ? null : title.toString());
+            item.putString("body", body == null ? null : body.toString());
+         }
+         item.putString("notificationID", known.getNotificationId());
+
+         result.pushMap(item);
+      }
+
+      return result;
+   }
+
+   /**
+    * Cancels every displayed notification whose additionalData contains all key / value pairs of the
+    * predicate. Returns the number of cancelled notifications, or -1 when the shade could not be read
+    * (below API 23): the payload store does not know which of its notifications are still displayed,
+    * so every match is cancelled but the count of the ones actually removed is unknown.
+    */
+   static int cancelMatchingData(Context context, NotificationPayloadStore payloadStore, ReadableMap predicate) {
+      List<NotificationView> candidates = new ArrayList<>();
+
+      StatusBarNotification[] active = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? activeNotifications(context) : null;
+      boolean countKnown = active != null;
+      if (countKnown) {
+         for (StatusBarNotification statusBarNotification : active) {
+            NotificationView known = payloadStore.getByAndroidNotificationId(statusBarNotification.getId());
+            if (known != null)
+               candidates.add(known);
+         }
+      } else {
+         candidates = payloadStore.snapshot();
+      }
+
+      int cancelled = 0;
+      for (NotificationView view : candidates) {
+         if (view.getNotification() == null || !matchesData(view.getAdditionalData(), predicate))
+            continue;
+
+         OneSignal.cancelNotification(view.getAndroidNotificationId());
+         cancelled++;
+      }
+      return countKnown ? cancelled : -1;
+   }
+
+   private static boolean matchesData(JSONObject data, ReadableMap predicate) {
+      if (data == null)
+         return false;
+
+      ReadableMapKeySetIterator iterator = predicate.keySetIterator();
+      while (iterator.hasNextKey()) {
+         String key = iterator.nextKey();
+         if (!data.has(key))
+            return false;
+
+         // Compare on the JSON type, "5" does not match 5 and "true" does not match true
+         Object value = data.opt(key);
+         switch (predicate.getType(key)) {
+            case Null:
+               if (value != JSONObject.NULL)
+                  return false;
+               break;
+            case Boolean:
+               if (!(value instanceof Boolean) || (Boolean) value != predicate.getBoolean(key))
+                  return false;
+               break;
+            case Number:
+               if (!(value instanceof Number) || ((Number) value).doubleValue() != predicate.getDouble(key))
+                  return false;
+               break;
+            case String:
+               if (!(value instanceof String) || !value.equals(predicate.getString(key)))
+                  return false;
+               break;
+            default:
+               // Maps and arrays are not supported in predicates
+               return false;
+         }
+      }
+      return true;
+   }
+}
@@ -0,0 +1,70 @@
+package com.geektime.rnonesignalandroid;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * Fixed size, log2 bucketed histogram of non negative values (durations in a caller chosen unit).
+ * Recording is O(1) and allocation free. Backs the per stage numbers of DeliveryLatencyTracer.
+ * Percentiles are reported as the upper bound of the matching bucket, capped to the max seen.
+ */
+class LatencyHistogram {
+   private static final int BUCKET_COUNT = 64;
+
+   private final long[] buckets = new long[BUCKET_COUNT];
+   private long count;
+   private long sum;
+   private long max;
+
+   synchronized void record(long value) {
+      if (value < 0)
+         value = 0;
+
+      // Bucket 0 holds 0, bucket i holds [2^(i-1), 2^i)
+      int bucket = BUCKET_COUNT - Long.numberOfLeadingZeros(value);
+      buckets[Math.min(bucket, BUCKET_COUNT - 1)]++;
+      count++;
+      sum += value;
+      if (value > max)
+         max = value;
+   }
+
+   synchronized long getCount() {
+      return count;
+   }
+
+   synchronized long percentile(double percentile) {
+      if (count == 0)
+         return 0;
+
+      long rank = (long) Math.ceil(count * percentile / 100.0);
+      long seen = 0;
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+         seen += buckets[i];
+         if (seen >= rank && seen > 0) {
+            long upperBound = i == 0 ? 0 : (1L << i) - 1;
+            return Math.min(upperBound, max);
+         }
+      }
+      return max;
+   }
+
+   synchronized void reset() {
+      for (int i = 0; i < BUCKET_COUNT; i++)
+         buckets[i] = 0;
+      count = 0;
+      sum = 0;
+      max = 0;
+   }
+
+   synchronized WritableMap toWritableMap() {
+      WritableMap map = Arguments.createMap();
+      map.putDouble("count", count);
+      map.putDouble("mean", count == 0 ? 0 : (double) sum / count);
+      map.putDouble("p50", percentile(50));
+      map.putDouble("p90", percentile(90));
+      map.putDouble("p99", percentile(99));
+      map.putDouble("max", max);
+      return map;
+   }
+}
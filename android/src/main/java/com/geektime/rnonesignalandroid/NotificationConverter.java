@@ -0,0 +1,96 @@
+package com.geektime.rnonesignalandroid;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.onesignal.OSNotification;
+import com.onesignal.OSNotificationOpenResult;
+import com.onesignal.OSNotificationPayload;
+
+import java.util.List;
+
+/**
+ * Writes notification events straight into the maps handed to the bridge.
+ *
+ * The result has the same shape as RNUtils.jsonToWritableMap(x.toJSONObject()) for the SDK 3.15
+ * OSNotification / OSNotificationPayload / OSNotificationOpenResult, but the typed fields are read
+ * once instead of being serialized to JSON and walked again. additionalData, which the SDK keeps
+ * as JSON, is the only part still converted from JSON. Null strings are left out, as
+ * JSONObject.put(key, null) does.
+ */
+class NotificationConverter {
+
+   static WritableMap openResultToWritableMap(OSNotificationOpenResult result) {
+      WritableMap action = Arguments.createMap();
+      putString(action, "actionID", result.action.actionID);
+      action.putInt("type", result.action.type.ordinal());
+
+      WritableMap event = Arguments.createMap();
+      event.putMap("action", action);
+      event.putMap("notification", notificationToWritableMap(result.notification));
+      return event;
+   }
+
+   static WritableMap notificationToWritableMap(OSNotification notification) {
+      WritableMap map = Arguments.createMap();
+      map.putBoolean("isAppInFocus", notification.isAppInFocus);
+      map.putBoolean("shown", notification.shown);
+      map.putInt("androidNotificationId", notification.androidNotificationId);
+      map.putInt("displayType", notification.displayType.ordinal());
+
+      List<OSNotificationPayload> grouped = notification.groupedNotifications;
+      if (grouped != null) {
+         WritableArray payloads = Arguments.createArray();
+         for (OSNotificationPayload payload : grouped)
+            payloads.pushMap(payloadToWritableMap(payload));
+         // An empty JSONArray converts to null in RNUtils
+         map.putArray("groupedNotifications", grouped.isEmpty() ? null : payloads);
+      }
+
+      map.putMap("payload", payloadToWritableMap(notification.payload));
+      return map;
+   }
+
+   static WritableMap payloadToWritableMap(OSNotificationPayload payload) {
+      WritableMap map = Arguments.createMap();
+      putString(map, "notificationID", payload.notificationID);
+      putString(map, "title", payload.title);
+      putString(map, "body", payload.body);
+      if (payload.additionalData != null)
+         map.putMap("additionalData", RNUtils.jsonToWritableMap(payload.additionalData));
+      putString(map, "smallIcon", payload.smallIcon);
+      putString(map, "largeIcon", payload.largeIcon);
+      putString(map, "bigPicture", payload.bigPicture);
+      putString(map, "smallIconAccentColor", payload.smallIconAccentColor);
+      putString(map, "launchURL", payload.launchURL);
+      putString(map, "sound", payload.sound);
+      putString(map, "ledColor", payload.ledColor);
+      map.putInt("lockScreenVisibility", payload.lockScreenVisibility);
+      putString(map, "groupKey", payload.groupKey);
+      putString(map, "groupMessage", payload.groupMessage);
+
+      List<OSNotificationPayload.ActionButton> buttons = payload.actionButtons;
+      if (buttons != null) {
+         WritableArray array = Arguments.createArray();
+         for (OSNotificationPayload.ActionButton button : buttons) {
+            WritableMap buttonMap = Arguments.createMap();
+            putString(buttonMap, "id", button.id);
+            putString(buttonMap, "text", button.text);
+            putString(buttonMap, "icon", button.icon);
+            array.pushMap(buttonMap);
+         }
+         map.putArray("actionButtons", buttons.isEmpty() ? null : array);
+      }
+
+      putString(map, "fromProjectNumber", payload.fromProjectNumber);
+      putString(map, "collapseId", payload.collapseId);
+      map.putInt("priority", payload.priority);
+      putString(map, "rawPayload", payload.rawPayload);
+      return map;
+   }
+
+   private static void putString(WritableMap map, String key, String value) {
+      if (value != null)
+         map.putString(key, value);
+   }
+}
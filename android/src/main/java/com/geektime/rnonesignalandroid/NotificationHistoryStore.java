@@ -0,0 +1,379 @@
+package com.geektime.rnonesignalandroid;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Native history of received / opened notifications for in-app inbox screens.
+ *
+ * The values of a configurable set of additionalData keys are stored in a side table, together with
+ * the group key. Queries are paginated with an opaque cursor (keyset pagination on received time +
+ * notification id). Each filter combination except dataKey + unreadOnly has an index ending with
+ * (received_at, notification_id), so the query seeks to the cursor and reads one page in index order,
+ * whatever the history size. With dataKey + unreadOnly the read flag is checked row by row, the
+ * cost of a page grows with the number of read notifications carrying that key.
+ *
+ * All database work runs on a single background thread, use post() to get on it.
+ */
+class NotificationHistoryStore extends SQLiteOpenHelper {
+   private static final String DATABASE_NAME = "rn_onesignal_history.db";
+   private static final int DATABASE_VERSION = 1;
+
+   private static final String TABLE_NOTIFICATIONS = "notification_history";
+   private static final String TABLE_DATA = "notification_history_data";
+
+   private static final int DEFAULT_PAGE_SIZE = 50;
+   // Stay below SQLite's default limit of 999 bound variables per statement
+   private static final int MAX_IDS_PER_STATEMENT = 500;
+
+   private final ExecutorService executor = Executors.newSingleThreadExecutor();
+   private volatile List<String> indexedDataKeys = new ArrayList<>();
+
+   NotificationHistoryStore(Context context) {
+      super(context.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+   }
+
+   @Override
+   public void onCreate(SQLiteDatabase db) {
+      db.execSQL("CREATE TABLE " + TABLE_NOTIFICATIONS + " (" +
+              "notification_id TEXT PRIMARY KEY, " +
+              "android_notification_id INTEGER, " +
+              "group_key TEXT, " +
+              "title TEXT, " +
+              "body TEXT, " +
+              "received_at INTEGER NOT NULL, " +
+              "opened_at INTEGER, " +
+              "read INTEGER NOT NULL DEFAULT 0, " +
+              "payload TEXT NOT NULL)");
+
+      // group_key is copied from the notification, it never changes
+      db.execSQL("CREATE TABLE " + TABLE_DATA + " (" +
+              "notification_id TEXT NOT NULL, " +
+              "data_key TEXT NOT NULL, " +
+              "data_value TEXT, " +
+              "group_key TEXT, " +
+              "received_at INTEGER NOT NULL, " +
+              "PRIMARY KEY (notification_id, data_key))");
+
+      // One index per filter combination, in the order of ORDER BY received_at DESC, notification_id DESC.
+      // Partial indexes would be smaller for unreadOnly, but need SQLite 3.8 (API 21).
+      db.execSQL("CREATE INDEX notification_history_received_at ON " + TABLE_NOTIFICATIONS + " (received_at, notification_id)");
+      db.execSQL("CREATE INDEX notification_history_group_key ON " + TABLE_NOTIFICATIONS + " (group_key, received_at, notification_id)");
+      db.execSQL("CREATE INDEX notification_history_read ON " + TABLE_NOTIFICATIONS + " (read, received_at, notification_id)");
+      db.execSQL("CREATE INDEX notification_history_group_key_read ON " + TABLE_NOTIFICATIONS + " (group_key, read, received_at, notification_id)");
+      db.execSQL("CREATE INDEX notification_history_data_key ON " + TABLE_DATA + " (data_key, received_at, notification_id)");
+      db.execSQL("CREATE INDEX notification_history_data_key_value ON " + TABLE_DATA + " (data_key, data_value, received_at, notification_id)");
+      db.execSQL("CREATE INDEX notification_history_data_key_group_key ON " + TABLE_DATA + " (data_key, group_key, received_at, notification_id)");
+      db.execSQL("CREATE INDEX notification_history_data_key_value_group_key ON " + TABLE_DATA + " (data_key, data_value, group_key, received_at, notification_id)");
+   }
+
+   @Override
+   public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+      // First schema version, nothing to migrate yet
+   }
+
+   void post(Runnable runnable) {
+      executor.execute(runnable);
+   }
+
+   /**
+    * Only applies to notifications recorded from now on, existing rows are not re-indexed.
+    */
+   void setIndexedDataKeys(List<String> keys) {
+      indexedDataKeys = new ArrayList<>(keys);
+   }
+
+   void recordReceived(final NotificationView view, final long receivedAt) {
+      post(new Runnable() {
+         @Override
+         public void run() {
+            insertIfMissing(view, receivedAt, null);
+         }
+      });
+   }
+
+   void recordOpened(final NotificationView view, final long openedAt) {
+      post(new Runnable() {
+         @Override
+         public void run() {
+            String notificationId = view.getNotificationId();
+            if (notificationId == null || insertIfMissing(view, openedAt, openedAt))
+               return;
+
+            ContentValues values = new ContentValues();
+            values.put("opened_at", openedAt);
+            values.put("read", 1);
+            getWritableDatabase().update(TABLE_NOTIFICATIONS, values, "notification_id = ?", new String[] { notificationId });
+         }
+      });
+   }
+
+   // Returns true if a new row was inserted
+   private boolean insertIfMissing(NotificationView view, long receivedAt, Long openedAt) {
+      if (view.getNotificationId() == null)
+         return false;
+
+      ContentValues values = new ContentValues();
+      values.put("notification_id", view.getNotificationId());
+      values.put("android_notification_id", view.getAndroidNotificationId());
+      values.put("group_key", view.getGroupKey());
+      values.put("title", view.getTitle());
+      values.put("body", view.getBody());
+      values.put("received_at", receivedAt);
+      if (openedAt != null) {
+         values.put("opened_at", openedAt);
+         values.put("read", 1);
+      }
+      values.put("payload", view.toJSONObject().toString());
+
+      SQLiteDatabase db = getWritableDatabase();
+      db.beginTransaction();
+      try {
+         long rowId = db.insertWithOnConflict(TABLE_NOTIFICATIONS, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+         if (rowId == -1)
+            return false;
+
+         JSONObject additionalData = view.getAdditionalData();
+         if (additionalData != null) {
+            for (String key : indexedDataKeys) {
+               if (!additionalData.has(key))
+                  continue;
+
+               ContentValues data = new ContentValues();
+               data.put("notification_id", view.getNotificationId());
+               data.put("data_key", key);
+               data.put("data_value", additionalData.isNull(key) ? null : String.valueOf(additionalData.opt(key)));
+               data.put("group_key", view.getGroupKey());
+               data.put("received_at", receivedAt);
+               db.insertWithOnConflict(TABLE_DATA, null, data, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+         }
+
+         db.setTransactionSuccessful();
+         return true;
+      } finally {
+         db.endTransaction();
+      }
+   }
+
+   /**
+    * Options: limit, cursor (from a previous page), groupKey, unreadOnly, dataKey + dataValue.
+    * Resolves to { notifications: [...], nextCursor } where nextCursor is null on the last page.
+    */
+   WritableMap query(ReadableMap options) {
+      int limit = DEFAULT_PAGE_SIZE;
+      String cursor = null;
+      String groupKey = null;
+      boolean unreadOnly = false;
+      String dataKey = null;
+      String dataValue = null;
+
+      if (options != null) {
+         if (options.hasKey("limit") && !options.isNull("limit"))
+            limit = Math.max(1, options.getInt("limit"));
+         if (options.hasKey("cursor") && !options.isNull("cursor"))
+            cursor = options.getString("cursor");
+         if (options.hasKey("groupKey") && !options.isNull("groupKey"))
+            groupKey = options.getString("groupKey");
+         if (options.hasKey("unreadOnly") && !options.isNull("unreadOnly"))
+            unreadOnly = options.getBoolean("unreadOnly");
+         if (options.hasKey("dataKey") && !options.isNull("dataKey"))
+            dataKey = options.getString("dataKey");
+         if (options.hasKey("dataValue") && !options.isNull("dataValue"))
+            dataValue = options.getString("dataValue");
+      }
+
+      StringBuilder sql = new StringBuilder("SELECT n.notification_id, n.android_notification_id, n.group_key, n.title, n.body, n.received_at, n.opened_at, n.read, n.payload FROM ");
+      List<String> args = new ArrayList<>();
+
+      // Alias of the table whose index drives the page order
+      String page;
+
+      if (dataKey != null) {
+         // CROSS JOIN keeps the data table as the outer loop so its (key, value, time) index gives the order
+         page = "d";
+         sql.append(TABLE_DATA).append(" d CROSS JOIN ").append(TABLE_NOTIFICATIONS)
+                 .append(" n ON n.notification_id = d.notification_id WHERE d.data_key = ?");
+         args.add(dataKey);
+         if (dataValue != null) {
+            sql.append(" AND d.data_value = ?");
+            args.add(dataValue);
+         }
+      } else {
+         page = "n";
+         sql.append(TABLE_NOTIFICATIONS).append(" n WHERE 1 = 1");
+      }
+
+      if (groupKey != null) {
+         sql.append(" AND ").append(page).append(".group_key = ?");
+         args.add(groupKey);
+      }
+
+      if (unreadOnly)
+         sql.append(" AND n.read = 0");
+
+      if (cursor != null) {
+         int separator = cursor.indexOf(':');
+         if (separator > 0) {
+            String receivedAt = cursor.substring(0, separator);
+            // The plain range on received_at lets SQLite seek to the cursor, the OR alone would scan from the newest row
+            sql.append(" AND ").append(page).append(".received_at <= ? AND (").append(page).append(".received_at < ? OR ")
+                    .append(page).append(".notification_id < ?)");
+            args.add(receivedAt);
+            args.add(receivedAt);
+            args.add(receivedAt);
+            args.add(cursor.substring(separator + 1));
+         }
+      }
+
+      // Fetch one extra row to know whether there is a next page
+      sql.append(" ORDER BY ").append(page).append(".received_at DESC, ").append(page).append(".notification_id DESC LIMIT ").append(limit + 1);
+
+      WritableArray notifications = Arguments.createArray();
+      String nextCursor = null;
+
+      Cursor rows = getReadableDatabase().rawQuery(sql.toString(), args.toArray(new String[0]));
+      try {
+         int count = 0;
+         String lastId = null;
+         long lastReceivedAt = 0;
+
+         while (rows.moveToNext()) {
+            if (count == limit) {
+               nextCursor = lastReceivedAt + ":" + lastId;
+               break;
+            }
+
+            lastId = rows.getString(0);
+            lastReceivedAt = rows.getLong(5);
+
+            WritableMap item = Arguments.createMap();
+            item.putString("notificationID", lastId);
+            item.putInt("androidNotificationId", rows.getInt(1));
+            item.putString("groupKey", rows.isNull(2) ? null : rows.getString(2));
+            item.putString("title", rows.isNull(3) ? null : rows.getString(3));
+            item.putString("body", rows.isNull(4) ? null : rows.getString(4));
+            item.putDouble("receivedAt", lastReceivedAt);
+            if (rows.isNull(6))
+               item.putNull("openedAt");
+            else
+               item.putDouble("openedAt", rows.getLong(6));
+            item.putBoolean("read", rows.getInt(7) != 0);
+            try {
+               item.putMap("notification", RNUtils.jsonToWritableMap(new JSONObject(rows.getString(8))));
+            } catch (JSONException e) {
+               Log.e("OneSignal", "Notification history payload could not be parsed: " + e.getMessage());
+            }
+
+            notifications.pushMap(item);
+            count++;
+         }
+      } finally {
+         rows.close();
+      }
+
+      WritableMap result = Arguments.createMap();
+      result.putArray("notifications", notifications);
+      result.putString("nextCursor", nextCursor);
+      return result;
+   }
+
+   int markRead(Collection<String> notificationIds, boolean read) {
+      ContentValues values = new ContentValues();
+      values.put("read", read ? 1 : 0);
+
+      int updated = 0;
+      SQLiteDatabase db = getWritableDatabase();
+      db.beginTransaction();
+      try {
+         for (List<String> chunk : chunks(notificationIds)) {
+            updated += db.update(TABLE_NOTIFICATIONS, values, "notification_id IN (" + placeholders(chunk.size()) + ")", chunk.toArray(new String[0]));
+         }
+         db.setTransactionSuccessful();
+      } finally {
+         db.endTransaction();
+      }
+      return updated;
+   }
+
+   int delete(Collection<String> notificationIds) {
+      int deleted = 0;
+      SQLiteDatabase db = getWritableDatabase();
+      db.beginTransaction();
+      try {
+         for (List<String> chunk : chunks(notificationIds)) {
+            String where = "notification_id IN (" + placeholders(chunk.size()) + ")";
+            String[] whereArgs = chunk.toArray(new String[0]);
+            db.delete(TABLE_DATA, where, whereArgs);
+            deleted += db.delete(TABLE_NOTIFICATIONS, where, whereArgs);
+         }
+         db.setTransactionSuccessful();
+      } finally {
+         db.endTransaction();
+      }
+      return deleted;
+   }
+
+   /**
+    * Deletes every notification received before the given time, or all of them when receivedBefore <= 0.
+    */
+   int clear(long receivedBefore) {
+      SQLiteDatabase db = getWritableDatabase();
+      db.beginTransaction();
+      try {
+         int deleted;
+         if (receivedBefore <= 0) {
+            db.delete(TABLE_DATA, null, null);
+            deleted = db.delete(TABLE_NOTIFICATIONS, null, null);
+         } else {
+            String[] whereArgs = new String[] { String.valueOf(receivedBefore) };
+            db.delete(TABLE_DATA, "notification_id IN (SELECT notification_id FROM " + TABLE_NOTIFICATIONS + " WHERE received_at < ?)", whereArgs);
+            deleted = db.delete(TABLE_NOTIFICATIONS, "received_at < ?", whereArgs);
+         }
+         db.setTransactionSuccessful();
+         return deleted;
+      } finally {
+         db.endTransaction();
+      }
+   }
+
+   private static List<List<String>> chunks(Collection<String> ids) {
+      List<List<String>> chunks = new ArrayList<>();
+      List<String> current = new ArrayList<>();
+      for (String id : ids) {
+         current.add(id);
+         if (current.size() == MAX_IDS_PER_STATEMENT) {
+            chunks.add(current);
+            current = new ArrayList<>();
+         }
+      }
+      if (!current.isEmpty())
+         chunks.add(current);
+      return chunks;
+   }
+
+   private static String placeholders(int count) {
+      StringBuilder builder = new StringBuilder();
+      for (int i = 0; i < count; i++)
+         builder.append(i == 0 ? "?" : ", ?");
+      return builder.toString();
+   }
+}
@@ -0,0 +1,65 @@
+package com.geektime.rnonesignalandroid;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Size bounded, least recently used store of received notifications keyed by OneSignal notification id.
+ * Backs the lightweight received event mode (only a summary crosses the bridge and JS pulls the full
+ * payload with getNotificationPayload(id)) and the bulk cancel APIs, which need the additionalData of
+ * the notifications in the shade. Notifications are kept as views and only converted when requested.
+ */
+class NotificationPayloadStore {
+   static final int DEFAULT_MAX_ENTRIES = 100;
+
+   private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+   private final LinkedHashMap<String, NotificationView> notifications = new LinkedHashMap<String, NotificationView>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, NotificationView> eldest) {
+         return size() > maxEntries;
+      }
+   };
+
+   synchronized void setMaxEntries(int maxEntries) {
+      this.maxEntries = Math.max(1, maxEntries);
+
+      // Trim right away instead of waiting for the next put
+      Iterator<String> iterator = notifications.keySet().iterator();
+      while (notifications.size() > this.maxEntries && iterator.hasNext()) {
+         iterator.next();
+         iterator.remove();
+      }
+   }
+
+   synchronized void put(NotificationView view) {
+      if (view.getNotificationId() != null)
+         notifications.put(view.getNotificationId(), view);
+   }
+
+   synchronized NotificationView get(String notificationId) {
+      return notifications.get(notificationId);
+   }
+
+   /**
+    * Looks up by Android notification id without touching the access order.
+    */
+   synchronized NotificationView getByAndroidNotificationId(int androidNotificationId) {
+      for (NotificationView view : notifications.values()) {
+         if (view.getAndroidNotificationId() == androidNotificationId)
+            return view;
+      }
+      return null;
+   }
+
+   synchronized List<NotificationView> snapshot() {
+      return new ArrayList<>(notifications.values());
+   }
+
+   synchronized void clear() {
+      notifications.clear();
+   }
+}
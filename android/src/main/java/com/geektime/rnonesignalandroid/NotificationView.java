@@ -0,0 +1,144 @@
+package com.geektime.rnonesignalandroid;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+import com.onesignal.OSNotification;
+import com.onesignal.OSNotificationPayload;
+
+import org.json.JSONObject;
+
+/**
+ * Immutable typed view of one received notification, used by the NotificationNotDisplayingExtender,
+ * RNOneSignalCore and the stores / converters.
+ *
+ * The OneSignal SDK already parses the payload into OSNotificationPayload, the accessors read its
+ * fields directly. The JS representation is written from those fields in a single pass by
+ * toWritableMap() and is not kept: it is built for one emit, and a WritableMap can only be handed
+ * to the bridge once.
+ */
+class NotificationView {
+   private static final String GOOGLE_SENT_TIME_KEY = "\"google.sent_time\"";
+
+   private final OSNotificationPayload payload;
+   private final OSNotification notification;
+
+   private NotificationView(OSNotificationPayload payload, OSNotification notification) {
+      this.payload = payload;
+      this.notification = notification;
+   }
+
+   /**
+    * View over a payload the SDK has not built an OSNotification for yet, used by the extender.
+    */
+   static NotificationView forPayload(OSNotificationPayload payload) {
+      return new NotificationView(payload, null);
+   }
+
+   static NotificationView forNotification(OSNotification notification) {
+      return new NotificationView(notification.payload, notification);
+   }
+
+   String getNotificationId() {
+      return payload.notificationID;
+   }
+
+   String getTitle() {
+      return payload.title;
+   }
+
+   String getBody() {
+      return payload.body;
+   }
+
+   String getGroupKey() {
+      return payload.groupKey;
+   }
+
+   JSONObject getAdditionalData() {
+      return payload.additionalData;
+   }
+
+   OSNotification getNotification() {
+      return notification;
+   }
+
+   int getAndroidNotificationId() {
+      return notification == null ? 0 : notification.androidNotificationId;
+   }
+
+   boolean isHidden() {
+      JSONObject additionalData = payload.additionalData;
+      return additionalData != null && additionalData.optBoolean(RNOneSignal.HIDDEN_MESSAGE_KEY, false);
+   }
+
+   /**
+    * Server side send time from the FCM payload, 0 when not available. Only the digits after the
+    * key are read, the raw payload is not parsed.
+    */
+   long getSentAtMillis() {
+      String rawPayload = payload.rawPayload;
+      int index = rawPayload == null ? -1 : rawPayload.indexOf(GOOGLE_SENT_TIME_KEY);
+      if (index < 0)
+         return 0;
+
+      long sentAt = 0;
+      boolean digits = false;
+      for (index += GOOGLE_SENT_TIME_KEY.length(); index < rawPayload.length(); index++) {
+         char c = rawPayload.charAt(index);
+         if (c >= '0' && c <= '9') {
+            sentAt = sentAt * 10 + (c - '0');
+            digits = true;
+         } else if (digits) {
+            break;
+         } else if (c != ':' && c != '"' && c != ' ') {
+            // Not a number, e.g. null
+            return 0;
+         }
+      }
+      return sentAt;
+   }
+
+   /**
+    * OSNotification.toJSONObject(), or the payload JSON alone if the SDK has not handed over the
+    * notification yet. Only used off the emit path (history rows), events use toWritableMap().
+    */
+   JSONObject toJSONObject() {
+      if (notification == null)
+         return payload.toJSONObject();
+
+      return notification.toJSONObject();
+   }
+
+   /**
+    * The event sent to JS, same shape as toJSONObject() but written in one pass.
+    */
+   WritableMap toWritableMap() {
+      if (notification == null)
+         return NotificationConverter.payloadToWritableMap(payload);
+
+      return NotificationConverter.notificationToWritableMap(notification);
+   }
+
+   /**
+    * Summary sent in lightweight received event mode, the full view stays native.
+    */
+   WritableMap toSummaryWritableMap() {
+      WritableMap summary = Arguments.createMap();
+      summary.putString("notificationID", payload.notificationID);
+      summary.putString("title", payload.title);
+      summary.putString("body", payload.body);
+      summary.putString("groupKey", payload.groupKey);
+
+      WritableMap result = Arguments.createMap();
+      result.putBoolean("lightweight", true);
+      result.putMap("payload", summary);
+
+      if (notification != null) {
+         result.putBoolean("isAppInFocus", notification.isAppInFocus);
+         result.putBoolean("shown", notification.shown);
+         result.putInt("androidNotificationId", notification.androidNotificationId);
+         result.putInt("displayType", notification.displayType.ordinal());
+      }
+      return result;
+   }
+}
@@ -0,0 +1,159 @@
+package com.geektime.rnonesignalandroid;
+
+import android.util.Log;
+
+import com.onesignal.OneSignal;
+import com.onesignal.OneSignal.OSExternalUserIdUpdateCompletionHandler;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records tag, trigger and external user id calls made from JS before OneSignal.init has run.
+ *
+ * Calls are collapsed as they come in (last write wins per tag / trigger key, last external user id
+ * wins) and replayed as a minimal batch by replay() right after init: at most one sendTags, one
+ * deleteTags, one addTriggers, one removeTriggersForKeys and one external user id call.
+ * External user id handlers of a call that is overridden by a different one are completed right
+ * away with { "superseded": true } instead of the result of a call they did not make.
+ * Not thread safe, RNOneSignalCore guards it together with its init flag.
+ */
+class PreInitCommandBuffer {
+   static final String SUPERSEDED_KEY = "superseded";
+
+   private final Map<String, String> tags = new LinkedHashMap<>();
+   private final Set<String> deletedTags = new LinkedHashSet<>();
+
+   private final Map<String, Object> triggers = new LinkedHashMap<>();
+   private final Set<String> removedTriggers = new LinkedHashSet<>();
+
+   private boolean hasExternalUserIdCall = false;
+   private String externalUserId;
+   private final List<OSExternalUserIdUpdateCompletionHandler> externalUserIdHandlers = new ArrayList<>();
+
+   void sendTag(String key, String value) {
+      deletedTags.remove(key);
+      tags.put(key, value);
+   }
+
+   void sendTags(JSONObject keyValues) {
+      if (keyValues == null)
+         return;
+
+      Iterator<String> keys = keyValues.keys();
+      while (keys.hasNext()) {
+         String key = keys.next();
+         if (keyValues.isNull(key))
+            deleteTag(key);
+         else
+            sendTag(key, keyValues.optString(key));
+      }
+   }
+
+   void deleteTag(String key) {
+      tags.remove(key);
+      deletedTags.add(key);
+   }
+
+   void addTriggers(Map<String, Object> keyValues) {
+      for (Map.Entry<String, Object> entry : keyValues.entrySet()) {
+         removedTriggers.remove(entry.getKey());
+         triggers.put(entry.getKey(), entry.getValue());
+      }
+   }
+
+   void removeTriggersForKeys(Collection<String> keys) {
+      for (String key : keys) {
+         triggers.remove(key);
+         removedTriggers.add(key);
+      }
+   }
+
+   /**
+    * A null externalUserId records a removeExternalUserId call.
+    * Repeats of the pending operation share its result, a different operation supersedes it.
+    */
+   void setExternalUserId(String externalUserId, OSExternalUserIdUpdateCompletionHandler handler) {
+      boolean sameOperation = externalUserId == null ? this.externalUserId == null : externalUserId.equals(this.externalUserId);
+      if (hasExternalUserIdCall && !sameOperation)
+         completeSuperseded();
+
+      hasExternalUserIdCall = true;
+      this.externalUserId = externalUserId;
+      if (handler != null)
+         externalUserIdHandlers.add(handler);
+   }
+
+   private void completeSuperseded() {
+      JSONObject superseded = new JSONObject();
+      try {
+         superseded.put(SUPERSEDED_KEY, true);
+      } catch (JSONException e) {
+         Log.e("OneSignal", "Building superseded external user id result failed with message: " + e.getMessage());
+      }
+
+      for (OSExternalUserIdUpdateCompletionHandler handler : externalUserIdHandlers)
+         handler.onComplete(superseded);
+      externalUserIdHandlers.clear();
+   }
+
+   void replay() {
+      if (!tags.isEmpty()) {
+         try {
+            JSONObject keyValues = new JSONObject();
+            for (Map.Entry<String, String> tag : tags.entrySet())
+               keyValues.put(tag.getKey(), tag.getValue());
+            OneSignal.sendTags(keyValues);
+         } catch (JSONException e) {
+            Log.e("OneSignal", "Replaying buffered tags failed with message: " + e.getMessage());
+         }
+      }
+
+      if (!deletedTags.isEmpty())
+         OneSignal.deleteTags(new ArrayList<>(deletedTags));
+
+      if (!triggers.isEmpty())
+         OneSignal.addTriggers(new HashMap<>(triggers));
+
+      if (!removedTriggers.isEmpty())
+         OneSignal.removeTriggersForKeys(new ArrayList<>(removedTriggers));
+
+      if (hasExternalUserIdCall) {
+         final List<OSExternalUserIdUpdateCompletionHandler> handlers = new ArrayList<>(externalUserIdHandlers);
+         OSExternalUserIdUpdateCompletionHandler fanOut = new OSExternalUserIdUpdateCompletionHandler() {
+            @Override
+            public void onComplete(JSONObject results) {
+               for (OSExternalUserIdUpdateCompletionHandler handler : handlers)
+                  handler.onComplete(results);
+            }
+         };
+
+         if (externalUserId != null)
+            OneSignal.setExternalUserId(externalUserId, fanOut);
+         else
+            OneSignal.removeExternalUserId(fanOut);
+      }
+
+      clear();
+   }
+
+   private void clear() {
+      tags.clear();
+      deletedTags.clear();
+      triggers.clear();
+      removedTriggers.clear();
+      hasExternalUserIdCall = false;
+      externalUserId = null;
+      externalUserIdHandlers.clear();
+   }
+}
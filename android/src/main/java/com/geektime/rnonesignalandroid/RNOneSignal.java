@@ -1,5 +1,8 @@
 package com.geektime.rnonesignalandroid;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 
 import android.content.Context;
@@ -20,7 +23,6 @@ import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.WritableNativeMap;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 import com.facebook.react.bridge.Promise;
-import com.onesignal.OSInAppMessageAction;
 import com.onesignal.OSPermissionState;
 import com.onesignal.OSPermissionSubscriptionState;
 import com.onesignal.OSSubscriptionState;
@@ -31,11 +33,6 @@ import com.onesignal.OneSignal.EmailUpdateError;
 import com.onesignal.OneSignal.OSExternalUserIdUpdateCompletionHandler;
 import com.onesignal.OneSignal.OutcomeCallback;
 
-import com.onesignal.OneSignal.InAppMessageClickHandler;
-import com.onesignal.OneSignal.NotificationOpenedHandler;
-import com.onesignal.OneSignal.NotificationReceivedHandler;
-import com.onesignal.OSNotificationOpenResult;
-import com.onesignal.OSNotification;
 import com.onesignal.OutcomeEvent;
 
 import org.json.JSONObject;
@@ -46,21 +43,12 @@ import org.json.JSONException;
 /**
  * Created by Avishay on 1/31/16.
  */
-public class RNOneSignal extends ReactContextBaseJavaModule implements LifecycleEventListener, NotificationReceivedHandler, NotificationOpenedHandler, InAppMessageClickHandler {
+public class RNOneSignal extends ReactContextBaseJavaModule implements LifecycleEventListener {
    public static final String HIDDEN_MESSAGE_KEY = "hidden";
 
    private ReactApplicationContext mReactApplicationContext;
    private ReactContext mReactContext;
-   private boolean oneSignalInitDone;
-   private boolean registeredEvents = false;
-
-   private OSNotificationOpenResult coldStartNotificationResult;
-   private OSInAppMessageAction inAppMessageActionResult;
-
-   private boolean hasSetNotificationOpenedHandler = false;
-   private boolean hasSetInAppClickedHandler = false;
-   private boolean hasSetRequiresPrivacyConsent = false;
-   private boolean waitingForUserPrivacyConsent = false;
+   private RNOneSignalCore mCore;
 
    //ensure only one callback exists at a given time due to react-native restriction
    private Callback pendingGetTagsCallback;
@@ -70,6 +58,8 @@ public class RNOneSignal extends ReactContextBaseJavaModule implements Lifecycle
       mReactApplicationContext = reactContext;
       mReactContext = reactContext;
       mReactContext.addLifecycleEventListener(this);
+      mCore = RNOneSignalCore.getInstance();
+      mCore.attach(this);
       initOneSignal();
    }
 
@@ -93,6 +83,10 @@ public class RNOneSignal extends ReactContextBaseJavaModule implements Lifecycle
       // Uncomment to debug init issues.
       // OneSignal.setLogLevel(OneSignal.LOG_LEVEL.VERBOSE, OneSignal.LOG_LEVEL.ERROR);
 
+      // The core survives React context reloads, nothing to do if a previous context already initialized
+      if (mCore.isInitDone())
+         return;
+
       OneSignal.sdkType = "react";
 
       String appId = appIdFromManifest(mReactApplicationContext);
@@ -101,11 +95,11 @@ public class RNOneSignal extends ReactContextBaseJavaModule implements Lifecycle
          init(appId);
    }
 
-   private void sendEvent(String eventName, Object params) {
+   void sendEvent(String eventName, Object params) {
       if(!mReactContext.hasActiveCatalystInstance()) {
             return;
       }
-      
+
       mReactContext
               .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
               .emit(eventName, params);
@@ -119,36 +113,23 @@ public class RNOneSignal extends ReactContextBaseJavaModule implements Lifecycle
    public void init(String appId) {
       Context context = mReactApplicationContext.getCurrentActivity();
 
-      if (oneSignalInitDone) {
-         Log.e("onesignal", "Already initialized the OneSignal React-Native SDK");
-         return;
-      }
-
-      oneSignalInitDone = true;
-
-      OneSignal.sdkType = "react";
-
       if (context == null) {
          // in some cases, especially when react-native-navigation is installed,
          // the activity can be null, so we can initialize with the context instead
          context = mReactApplicationContext.getApplicationContext();
       }
 
-      OneSignal.getCurrentOrNewInitBuilder().setInAppMessageClickHandler(this);
-      OneSignal.init(context, null, appId, this, this);
-
-      if (this.hasSetRequiresPrivacyConsent)
-         this.waitingForUserPrivacyConsent = true;
+      mCore.init(context, appId);
    }
 
    @ReactMethod
    public void sendTag(String key, String value) {
-      OneSignal.sendTag(key, value);
+      mCore.sendTag(key, value);
    }
 
    @ReactMethod
    public void sendTags(ReadableMap tags) {
-      OneSignal.sendTags(RNUtils.readableMapToJson(tags));
+      mCore.sendTags(RNUtils.readableMapToJson(tags));
    }
 
    @ReactMethod
@@ -267,7 +248,7 @@ public class RNOneSignal extends ReactContextBaseJavaModule implements Lifecycle
 
    @ReactMethod
    public void deleteTag(String key) {
-      OneSignal.deleteTag(key);
+      mCore.deleteTag(key);
    }
 
    @ReactMethod
@@ -364,9 +345,30 @@ public class RNOneSignal extends ReactContextBaseJavaModule implements Lifecycle
       OneSignal.cancelNotification(id);
    }
 
+   @ReactMethod
+   public void cancelNotifications(ReadableArray ids) {
+      for (int i = 0; i < ids.size(); i++)
+         OneSignal.cancelNotification(ids.getInt(i));
+   }
+
+   @ReactMethod
+   public void cancelGroupedNotifications(String groupKey) {
+      OneSignal.cancelGroupedNotifications(groupKey);
+   }
+
+   @ReactMethod
+   public void cancelNotificationsMatchingData(ReadableMap predicate, Promise promise) {
+      promise.resolve(DisplayedNotifications.cancelMatchingData(mReactApplicationContext, mCore.getPayloadStore(), predicate));
+   }
+
+   @ReactMethod
+   public void getDisplayedNotifications(Promise promise) {
+      promise.resolve(DisplayedNotifications.list(mReactApplicationContext, mCore.getPayloadStore()));
+   }
+
    @ReactMethod
    public void setRequiresUserPrivacyConsent(Boolean required) {
-      OneSignal.setRequiresUserPrivacyConsent(required);
+      mCore.setRequiresUserPrivacyConsent(required);
    }
 
    @ReactMethod
@@ -381,10 +383,13 @@ public class RNOneSignal extends ReactContextBaseJavaModule implements Lifecycle
 
    @ReactMethod
    public void setExternalUserId(final String externalId, final Callback callback) {
-      OneSignal.setExternalUserId(externalId, new OneSignal.OSExternalUserIdUpdateCompletionHandler() {
+      mCore.setExternalUserId(externalId, new OneSignal.OSExternalUserIdUpdateCompletionHandler() {
          @Override
          public void onComplete(JSONObject results) {
-            Log.i("OneSignal", "Completed setting external user id: " + externalId + "with results: " + results.toString());
+            if (results.optBoolean(PreInitCommandBuffer.SUPERSEDED_KEY))
+               Log.i("OneSignal", "Skipped setting external user id: " + externalId + ", superseded by a later call made before init");
+            else
+               Log.i("OneSignal", "Completed setting external user id: " + externalId + "with results: " + results.toString());
             if (callback != null)
                callback.invoke(RNUtils.jsonToWritableMap(results));
          }
@@ -393,10 +398,13 @@ public class RNOneSignal extends ReactContextBaseJavaModule implements Lifecycle
 
    @ReactMethod
    public void removeExternalUserId(final Callback callback) {
-      OneSignal.removeExternalUserId(new OneSignal.OSExternalUserIdUpdateCompletionHandler() {
+      mCore.removeExternalUserId(new OneSignal.OSExternalUserIdUpdateCompletionHandler() {
          @Override
          public void onComplete(JSONObject results) {
-            Log.i("OneSignal", "Completed removing external user id with results: " + results.toString());
+            if (results.optBoolean(PreInitCommandBuffer.SUPERSEDED_KEY))
+               Log.i("OneSignal", "Skipped removing external user id, superseded by a later call made before init");
+            else
+               Log.i("OneSignal", "Completed removing external user id with results: " + results.toString());
             if (callback != null)
                callback.invoke(RNUtils.jsonToWritableMap(results));
          }
@@ -405,25 +413,7 @@ public class RNOneSignal extends ReactContextBaseJavaModule implements Lifecycle
 
    @ReactMethod
    public void initNotificationOpenedHandlerParams() {
-      this.hasSetNotificationOpenedHandler = true;
-      if (this.coldStartNotificationResult != null) {
-         this.notificationOpened(this.coldStartNotificationResult);
-         this.coldStartNotificationResult = null;
-      }
-   }
-
-   @Override
-   public void notificationReceived(OSNotification notification) {
-      this.sendEvent("OneSignal-remoteNotificationReceived", RNUtils.jsonToWritableMap(notification.toJSONObject()));
-   }
-
-   @Override
-   public void notificationOpened(OSNotificationOpenResult result) {
-      if (!this.hasSetNotificationOpenedHandler) {
-         this.coldStartNotificationResult = result;
-         return;
-      }
-      this.sendEvent("OneSignal-remoteNotificationOpened", RNUtils.jsonToWritableMap(result.toJSONObject()));
+      mCore.initNotificationOpenedHandlerParams();
    }
 
    /**
@@ -432,22 +422,22 @@ public class RNOneSignal extends ReactContextBaseJavaModule implements Lifecycle
 
    @ReactMethod
    public void addTrigger(String key, Object object) {
-      OneSignal.addTrigger(key, object);
+      mCore.addTriggers(Collections.singletonMap(key, object));
    }
 
    @ReactMethod
    public void addTriggers(ReadableMap triggers) {
-      OneSignal.addTriggers(triggers.toHashMap());
+      mCore.addTriggers(triggers.toHashMap());
    }
 
    @ReactMethod
    public void removeTriggerForKey(String key) {
-      OneSignal.removeTriggerForKey(key);
+      mCore.removeTriggersForKeys(Collections.singletonList(key));
    }
 
    @ReactMethod
    public void removeTriggersForKeys(ReadableArray keys) {
-      OneSignal.removeTriggersForKeys(RNUtils.convertReableArrayIntoStringCollection(keys));
+      mCore.removeTriggersForKeys(RNUtils.convertReableArrayIntoStringCollection(keys));
    }
 
    @ReactMethod
@@ -462,20 +452,7 @@ public class RNOneSignal extends ReactContextBaseJavaModule implements Lifecycle
 
    @ReactMethod
    public void initInAppMessageClickHandlerParams() {
-      this.hasSetInAppClickedHandler = true;
-      if (inAppMessageActionResult != null) {
-         this.inAppMessageClicked(this.inAppMessageActionResult);
-         this.inAppMessageActionResult = null;
-      }
-   }
-
-   @Override
-   public void inAppMessageClicked(OSInAppMessageAction result) {
-      if (!this.hasSetInAppClickedHandler) {
-         this.inAppMessageActionResult = result;
-         return;
-      }
-      this.sendEvent("OneSignal-inAppMessageClicked", RNUtils.jsonToWritableMap(result.toJSONObject()));
+      mCore.initInAppMessageClickHandlerParams();
    }
 
    /**
@@ -536,6 +513,140 @@ public class RNOneSignal extends ReactContextBaseJavaModule implements Lifecycle
       });
    }
 
+   /**
+    * Event encoding
+    */
+
+   @ReactMethod
+   public void setCompactEventEncoding(Boolean enabled) {
+      mCore.setCompactEventEncoding(enabled);
+   }
+
+   @ReactMethod
+   public void setLightweightReceivedEvents(Boolean enabled, int maxStoredPayloads) {
+      mCore.setLightweightReceivedEvents(enabled, maxStoredPayloads);
+   }
+
+   @ReactMethod
+   public void getNotificationPayload(String notificationId, Promise promise) {
+      // Resolves null once the notification has been evicted from the payload store
+      promise.resolve(mCore.getNotificationPayload(notificationId));
+   }
+
+   /**
+    * Notification history
+    */
+
+   @ReactMethod
+   public void enableNotificationHistory(ReadableArray indexedDataKeys) {
+      mCore.enableNotificationHistory(mReactApplicationContext, new ArrayList<>(RNUtils.convertReableArrayIntoStringCollection(indexedDataKeys)));
+   }
+
+   private NotificationHistoryStore historyStoreOrReject(Promise promise) {
+      NotificationHistoryStore history = mCore.getHistoryStore();
+      if (history == null)
+         promise.reject("OneSignal", "Notification history is not enabled, call enableNotificationHistory first");
+      return history;
+   }
+
+   @ReactMethod
+   public void queryNotificationHistory(final ReadableMap options, final Promise promise) {
+      final NotificationHistoryStore history = historyStoreOrReject(promise);
+      if (history == null)
+         return;
+
+      history.post(new Runnable() {
+         @Override
+         public void run() {
+            try {
+               promise.resolve(history.query(options));
+            } catch (Exception e) {
+               promise.reject("OneSignal", "queryNotificationHistory failed with message: " + e.getMessage(), e);
+            }
+         }
+      });
+   }
+
+   @ReactMethod
+   public void markNotificationsRead(ReadableArray notificationIds, final Boolean read, final Promise promise) {
+      final NotificationHistoryStore history = historyStoreOrReject(promise);
+      if (history == null)
+         return;
+
+      final Collection<String> ids = RNUtils.convertReableArrayIntoStringCollection(notificationIds);
+      history.post(new Runnable() {
+         @Override
+         public void run() {
+            try {
+               promise.resolve(history.markRead(ids, read));
+            } catch (Exception e) {
+               promise.reject("OneSignal", "markNotificationsRead failed with message: " + e.getMessage(), e);
+            }
+         }
+      });
+   }
+
+   @ReactMethod
+   public void deleteNotificationsFromHistory(ReadableArray notificationIds, final Promise promise) {
+      final NotificationHistoryStore history = historyStoreOrReject(promise);
+      if (history == null)
+         return;
+
+      final Collection<String> ids = RNUtils.convertReableArrayIntoStringCollection(notificationIds);
+      history.post(new Runnable() {
+         @Override
+         public void run() {
+            try {
+               promise.resolve(history.delete(ids));
+            } catch (Exception e) {
+               promise.reject("OneSignal", "deleteNotificationsFromHistory failed with message: " + e.getMessage(), e);
+            }
+         }
+      });
+   }
+
+   @ReactMethod
+   public void clearNotificationHistory(final double receivedBefore, final Promise promise) {
+      final NotificationHistoryStore history = historyStoreOrReject(promise);
+      if (history == null)
+         return;
+
+      history.post(new Runnable() {
+         @Override
+         public void run() {
+            try {
+               promise.resolve(history.clear((long) receivedBefore));
+            } catch (Exception e) {
+               promise.reject("OneSignal", "clearNotificationHistory failed with message: " + e.getMessage(), e);
+            }
+         }
+      });
+   }
+
+   /**
+    * Diagnostics
+    */
+
+   @ReactMethod
+   public void setDeliveryLatencyTracing(Boolean enabled) {
+      mCore.getDeliveryTracer().setEnabled(enabled);
+   }
+
+   @ReactMethod
+   public void acknowledgeNotification(String notificationId, double jsReceivedAt) {
+      mCore.getDeliveryTracer().acknowledge(notificationId, (long) jsReceivedAt);
+   }
+
+   @ReactMethod
+   public void getDeliveryLatencyStats(Promise promise) {
+      promise.resolve(mCore.getDeliveryTracer().toWritableMap());
+   }
+
+   @ReactMethod
+   public void resetDeliveryLatencyStats() {
+      mCore.getDeliveryTracer().reset();
+   }
+
    /**
     * Overrides
     */
@@ -545,6 +656,15 @@ public class RNOneSignal extends ReactContextBaseJavaModule implements Lifecycle
       return "OneSignal";
    }
 
+   @Override
+   public void onCatalystInstanceDestroy() {
+      // React context is being torn down (app exit, dev or OTA bundle reload).
+      // Release the process-wide handlers so this instance and its context can be collected.
+      mReactContext.removeLifecycleEventListener(this);
+      mCore.detach(this);
+      pendingGetTagsCallback = null;
+   }
+
    @Override
    public void onHostDestroy() {
 
@@ -0,0 +1,336 @@
+package com.geektime.rnonesignalandroid;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Trace;
+import android.util.Log;
+
+import com.facebook.react.bridge.WritableMap;
+import com.onesignal.OSInAppMessageAction;
+import com.onesignal.OSNotification;
+import com.onesignal.OSNotificationOpenResult;
+import com.onesignal.OneSignal;
+import com.onesignal.OneSignal.InAppMessageClickHandler;
+import com.onesignal.OneSignal.NotificationOpenedHandler;
+import com.onesignal.OneSignal.NotificationReceivedHandler;
+import com.onesignal.OneSignal.OSExternalUserIdUpdateCompletionHandler;
+
+import org.json.JSONObject;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process-wide owner of the OneSignal handlers and of the state that has to outlive a single
+ * React context (init flag, cold start caches, etc).
+ *
+ * React creates a new RNOneSignal module every time the JS bundle is (re)loaded. The OneSignal SDK
+ * however only accepts handlers once per process, so the handlers live here and the current
+ * module attaches / detaches itself as React contexts come and go. Events that arrive while no
+ * module is attached are either cached (opened / in-app clicked) or dropped (received), matching
+ * the behaviour of a module without an active catalyst instance.
+ */
+class RNOneSignalCore implements NotificationReceivedHandler, NotificationOpenedHandler, InAppMessageClickHandler {
+   // Measured by the first notification macrobenchmark of the example app
+   static final String TRACE_NOTIFICATION_RECEIVED = "RNOneSignal.notificationReceived";
+
+   private static RNOneSignalCore sInstance;
+
+   // Read without locking on every emit
+   private volatile RNOneSignal attachedModule;
+   private boolean oneSignalInitDone;
+
+   private OSNotificationOpenResult coldStartNotificationResult;
+   private OSInAppMessageAction inAppMessageActionResult;
+
+   private boolean hasSetNotificationOpenedHandler = false;
+   private boolean hasSetInAppClickedHandler = false;
+   private boolean hasSetRequiresPrivacyConsent = false;
+   private boolean waitingForUserPrivacyConsent = false;
+   private volatile boolean compactEventEncoding = false;
+   private volatile boolean lightweightReceivedEvents = false;
+
+   private final NotificationPayloadStore payloadStore = new NotificationPayloadStore();
+   private volatile NotificationHistoryStore historyStore;
+
+   private final PreInitCommandBuffer preInitBuffer = new PreInitCommandBuffer();
+   private final DeliveryLatencyTracer deliveryTracer = new DeliveryLatencyTracer();
+
+   static synchronized RNOneSignalCore getInstance() {
+      if (sInstance == null)
+         sInstance = new RNOneSignalCore();
+      return sInstance;
+   }
+
+   private RNOneSignalCore() {
+   }
+
+   /**
+    * Attaches the module of the current React context, replacing any previous one.
+    * Delivery latency tracing is switched off, a freshly loaded bundle starts with it disabled.
+    */
+   synchronized void attach(RNOneSignal module) {
+      attachedModule = module;
+      deliveryTracer.setEnabled(false);
+   }
+
+   /**
+    * Detaches the module if it is still the attached one. The JS handlers of the old context are
+    * gone, so new opened / in-app clicked events are cached until the next context asks for them.
+    */
+   synchronized void detach(RNOneSignal module) {
+      if (attachedModule != module)
+         return;
+
+      attachedModule = null;
+      hasSetNotificationOpenedHandler = false;
+      hasSetInAppClickedHandler = false;
+   }
+
+   synchronized boolean isInitDone() {
+      return oneSignalInitDone;
+   }
+
+   synchronized void init(Context context, String appId) {
+      if (oneSignalInitDone) {
+         Log.e("onesignal", "Already initialized the OneSignal React-Native SDK");
+         return;
+      }
+
+      oneSignalInitDone = true;
+
+      OneSignal.sdkType = "react";
+
+      OneSignal.getCurrentOrNewInitBuilder().setInAppMessageClickHandler(this);
+      OneSignal.init(context, null, appId, this, this);
+
+      if (this.hasSetRequiresPrivacyConsent)
+         this.waitingForUserPrivacyConsent = true;
+
+      preInitBuffer.replay();
+   }
+
+   /**
+    * Tags, triggers and external user id calls made before init are buffered and replayed
+    * as one collapsed batch once init has run.
+    */
+
+   void sendTag(String key, String value) {
+      synchronized (this) {
+         if (!oneSignalInitDone) {
+            preInitBuffer.sendTag(key, value);
+            return;
+         }
+      }
+      OneSignal.sendTag(key, value);
+   }
+
+   void sendTags(JSONObject keyValues) {
+      synchronized (this) {
+         if (!oneSignalInitDone) {
+            preInitBuffer.sendTags(keyValues);
+            return;
+         }
+      }
+      OneSignal.sendTags(keyValues);
+   }
+
+   void deleteTag(String key) {
+      synchronized (this) {
+         if (!oneSignalInitDone) {
+            preInitBuffer.deleteTag(key);
+            return;
+         }
+      }
+      OneSignal.deleteTag(key);
+   }
+
+   void addTriggers(Map<String, Object> triggers) {
+      synchronized (this) {
+         if (!oneSignalInitDone) {
+            preInitBuffer.addTriggers(triggers);
+            return;
+         }
+      }
+      OneSignal.addTriggers(triggers);
+   }
+
+   void removeTriggersForKeys(Collection<String> keys) {
+      synchronized (this) {
+         if (!oneSignalInitDone) {
+            preInitBuffer.removeTriggersForKeys(keys);
+            return;
+         }
+      }
+      OneSignal.removeTriggersForKeys(keys);
+   }
+
+   void setExternalUserId(String externalUserId, OSExternalUserIdUpdateCompletionHandler handler) {
+      synchronized (this) {
+         if (!oneSignalInitDone) {
+            preInitBuffer.setExternalUserId(externalUserId, handler);
+            return;
+         }
+      }
+      OneSignal.setExternalUserId(externalUserId, handler);
+   }
+
+   void removeExternalUserId(OSExternalUserIdUpdateCompletionHandler handler) {
+      synchronized (this) {
+         if (!oneSignalInitDone) {
+            preInitBuffer.setExternalUserId(null, handler);
+            return;
+         }
+      }
+      OneSignal.removeExternalUserId(handler);
+   }
+
+   synchronized void setRequiresUserPrivacyConsent(boolean required) {
+      this.hasSetRequiresPrivacyConsent = required;
+      OneSignal.setRequiresUserPrivacyConsent(required);
+   }
+
+   void setCompactEventEncoding(boolean enabled) {
+      this.compactEventEncoding = enabled;
+   }
+
+   /**
+    * In lightweight mode received events only carry a summary, the full notification is kept in
+    * a bounded LRU store and fetched on demand through getNotificationPayload.
+    */
+   void setLightweightReceivedEvents(boolean enabled, int maxStoredPayloads) {
+      payloadStore.setMaxEntries(maxStoredPayloads);
+      this.lightweightReceivedEvents = enabled;
+   }
+
+   /**
+    * Starts recording received / opened notifications into the native history store.
+    */
+   synchronized NotificationHistoryStore enableNotificationHistory(Context context, List<String> indexedDataKeys) {
+      if (historyStore == null)
+         historyStore = new NotificationHistoryStore(context);
+
+      historyStore.setIndexedDataKeys(indexedDataKeys);
+      return historyStore;
+   }
+
+   NotificationHistoryStore getHistoryStore() {
+      return historyStore;
+   }
+
+   NotificationPayloadStore getPayloadStore() {
+      return payloadStore;
+   }
+
+   WritableMap getNotificationPayload(String notificationId) {
+      NotificationView view = payloadStore.get(notificationId);
+      return view == null ? null : view.toWritableMap();
+   }
+
+   DeliveryLatencyTracer getDeliveryTracer() {
+      return deliveryTracer;
+   }
+
+   private void sendEvent(String eventName, Object params) {
+      RNOneSignal module = attachedModule;
+      if (module != null)
+         module.sendEvent(eventName, params);
+   }
+
+   void initNotificationOpenedHandlerParams() {
+      OSNotificationOpenResult result;
+      synchronized (this) {
+         this.hasSetNotificationOpenedHandler = true;
+         result = this.coldStartNotificationResult;
+         this.coldStartNotificationResult = null;
+      }
+
+      if (result != null)
+         this.emitNotificationOpened(result);
+   }
+
+   void initInAppMessageClickHandlerParams() {
+      OSInAppMessageAction result;
+      synchronized (this) {
+         this.hasSetInAppClickedHandler = true;
+         result = this.inAppMessageActionResult;
+         this.inAppMessageActionResult = null;
+      }
+
+      if (result != null)
+         this.inAppMessageClicked(result);
+   }
+
+   @Override
+   public void notificationReceived(OSNotification notification) {
+      boolean traced = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+      if (traced)
+         Trace.beginSection(TRACE_NOTIFICATION_RECEIVED);
+
+      try {
+         emitNotificationReceived(notification);
+      } finally {
+         if (traced)
+            Trace.endSection();
+      }
+   }
+
+   private void emitNotificationReceived(OSNotification notification) {
+      NotificationView view = NotificationView.forNotification(notification);
+      String notificationId = view.getNotificationId();
+
+      deliveryTracer.markReceived(view);
+
+      // The history row is converted on the store's thread, not here
+      NotificationHistoryStore history = historyStore;
+      if (history != null)
+         history.recordReceived(view, System.currentTimeMillis());
+
+      payloadStore.put(view);
+
+      Object event;
+      boolean lightweight = lightweightReceivedEvents;
+      if (compactEventEncoding)
+         event = CompactEventCodec.encodeReceived(notification, lightweight);
+      else
+         event = lightweight ? view.toSummaryWritableMap() : view.toWritableMap();
+
+      deliveryTracer.markConverted(notificationId);
+      this.sendEvent("OneSignal-remoteNotificationReceived", event);
+      deliveryTracer.markEmitted(notificationId);
+   }
+
+   @Override
+   public void notificationOpened(OSNotificationOpenResult result) {
+      NotificationHistoryStore history = historyStore;
+      if (history != null && result.notification != null)
+         history.recordOpened(NotificationView.forNotification(result.notification), System.currentTimeMillis());
+
+      emitNotificationOpened(result);
+   }
+
+   // Split from notificationOpened so replaying a cold start open does not record it twice
+   private void emitNotificationOpened(OSNotificationOpenResult result) {
+      synchronized (this) {
+         if (!this.hasSetNotificationOpenedHandler) {
+            this.coldStartNotificationResult = result;
+            return;
+         }
+      }
+      Object event = compactEventEncoding ? CompactEventCodec.encodeOpened(result) : NotificationConverter.openResultToWritableMap(result);
+      this.sendEvent("OneSignal-remoteNotificationOpened", event);
+   }
+
+   @Override
+   public void inAppMessageClicked(OSInAppMessageAction result) {
+      synchronized (this) {
+         if (!this.hasSetInAppClickedHandler) {
+            this.inAppMessageActionResult = result;
+            return;
+         }
+      }
+      Object event = compactEventEncoding ? CompactEventCodec.encodeInAppMessageClicked(result) : RNUtils.jsonToWritableMap(result.toJSONObject());
+      this.sendEvent("OneSignal-inAppMessageClicked", event);
+   }
+}
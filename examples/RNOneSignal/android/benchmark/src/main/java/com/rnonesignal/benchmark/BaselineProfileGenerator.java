@@ -0,0 +1,43 @@
+package com.rnonesignal.benchmark;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * Generates the baseline profile shipped by the library in android/src/main/baseline-prof.txt.
+ *
+ * Runs the cold start and first notification journeys and keeps only the rules of the library package.
+ * Needs a rooted device or a userdebug emulator image (adb root):
+ *    ./gradlew :benchmark:connectedBenchmarkAndroidTest \
+ *       -Pandroid.testInstrumentationRunnerArguments.class=com.rnonesignal.benchmark.BaselineProfileGenerator
+ * then copy benchmark/build/outputs/connected_android_test_additional_output/benchmark/connected/<device>/
+ * BaselineProfileGenerator_generate-baseline-prof.txt over android/src/main/baseline-prof.txt.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+
+  @Rule
+  public BaselineProfileRule baselineProfileRule = new BaselineProfileRule();
+
+  @Test
+  public void generate() {
+    baselineProfileRule.collectBaselineProfile(
+        NotificationJourneys.PACKAGE_NAME,
+        Collections.singletonList(NotificationJourneys.LIBRARY_PACKAGE),
+        scope -> {
+          scope.pressHome();
+          NotificationJourneys.startApp(scope);
+          NotificationJourneys.grantConsent(scope);
+          NotificationJourneys.receiveNotification(scope);
+          return Unit.INSTANCE;
+        });
+  }
+}
@@ -0,0 +1,59 @@
+package com.rnonesignal.benchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * Time the library spends on the first notification after a cold start, from the OneSignal received
+ * callback to the event handed to the bridge (the RNOneSignal.notificationReceived trace section),
+ * interpreted versus with the baseline profile.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FirstNotificationBenchmark {
+  private static final int ITERATIONS = 10;
+  private static final String NOTIFICATION_RECEIVED_SECTION = "RNOneSignal.notificationReceived";
+
+  @Rule
+  public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+  @Test
+  public void firstNotificationWithoutProfile() {
+    firstNotification(new CompilationMode.None());
+  }
+
+  @Test
+  public void firstNotificationWithBaselineProfile() {
+    firstNotification(new CompilationMode.Partial(BaselineProfileMode.Require, 0));
+  }
+
+  private void firstNotification(CompilationMode compilationMode) {
+    benchmarkRule.measureRepeated(
+        NotificationJourneys.PACKAGE_NAME,
+        Collections.singletonList(new TraceSectionMetric(NOTIFICATION_RECEIVED_SECTION)),
+        compilationMode,
+        StartupMode.COLD,
+        ITERATIONS,
+        scope -> {
+          scope.pressHome();
+          NotificationJourneys.startApp(scope);
+          NotificationJourneys.grantConsent(scope);
+          return Unit.INSTANCE;
+        },
+        scope -> {
+          NotificationJourneys.receiveNotification(scope);
+          return Unit.INSTANCE;
+        });
+  }
+}
@@ -0,0 +1,69 @@
+package com.rnonesignal.benchmark;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * User journeys through the example app shared by the benchmarks and the baseline profile generator.
+ */
+final class NotificationJourneys {
+  static final String PACKAGE_NAME = "com.rnonesignal";
+  static final String LIBRARY_PACKAGE = "com.geektime.rnonesignalandroid";
+
+  private static final long TIMEOUT_MS = 10000;
+
+  private NotificationJourneys() {
+  }
+
+  /**
+   * Launches the app and waits until React has rendered the first screen, by then RNOneSignal is
+   * created and OneSignal.init has run from JS.
+   */
+  static void startApp(MacrobenchmarkScope scope) {
+    scope.startActivityAndWait();
+    scope.getDevice().wait(Until.hasObject(By.textContains("Welcome to React Native")), TIMEOUT_MS);
+  }
+
+  /**
+   * The example app requires privacy consent before OneSignal processes pushes. Consent is kept
+   * across launches, so this only taps the button on a fresh install.
+   */
+  static void grantConsent(MacrobenchmarkScope scope) {
+    UiObject2 grantConsent = scope.getDevice().findObject(By.text(Pattern.compile("(?i)grant consent")));
+    if (grantConsent == null)
+      return;
+
+    grantConsent.click();
+    scope.getDevice().wait(Until.hasObject(By.text(Pattern.compile("(?i)remove consent"))), TIMEOUT_MS);
+  }
+
+  /**
+   * Delivers a push the way FCM does, straight to OneSignal's receiver, and waits for the example
+   * app to print it from its JS received listener. The receiver is protected by the c2dm SEND
+   * permission, so the broadcast is sent as root.
+   * The shell command is split on spaces without quoting, none of the values may contain one.
+   */
+  static void receiveNotification(MacrobenchmarkScope scope) {
+    String notificationId = UUID.randomUUID().toString();
+    String custom = "{\"i\":\"" + notificationId + "\",\"a\":{\"source\":\"benchmark\"}}";
+
+    try {
+      scope.getDevice().executeShellCommand("su 0 am broadcast"
+          + " -a com.google.android.c2dm.intent.RECEIVE"
+          + " -n " + PACKAGE_NAME + "/com.onesignal.GcmBroadcastReceiver"
+          + " --es title Benchmark"
+          + " --es alert First-notification"
+          + " --es custom " + custom);
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not deliver the benchmark notification", e);
+    }
+
+    scope.getDevice().wait(Until.hasObject(By.textContains(notificationId)), TIMEOUT_MS);
+  }
+}
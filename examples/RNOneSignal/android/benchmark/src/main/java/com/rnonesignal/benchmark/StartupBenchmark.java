@@ -0,0 +1,55 @@
+package com.rnonesignal.benchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * Cold start of the example app up to the first React screen, interpreted versus with the baseline
+ * profile shipped by the library (merged into the app's baseline profile at build time).
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+  private static final int ITERATIONS = 10;
+
+  @Rule
+  public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+  @Test
+  public void coldStartWithoutProfile() {
+    coldStart(new CompilationMode.None());
+  }
+
+  @Test
+  public void coldStartWithBaselineProfile() {
+    coldStart(new CompilationMode.Partial(BaselineProfileMode.Require, 0));
+  }
+
+  private void coldStart(CompilationMode compilationMode) {
+    benchmarkRule.measureRepeated(
+        NotificationJourneys.PACKAGE_NAME,
+        Collections.singletonList(new StartupTimingMetric()),
+        compilationMode,
+        StartupMode.COLD,
+        ITERATIONS,
+        scope -> {
+          scope.pressHome();
+          return Unit.INSTANCE;
+        },
+        scope -> {
+          NotificationJourneys.startApp(scope);
+          return Unit.INSTANCE;
+        });
+  }
+}
@@ -55,11 +55,26 @@ const _eventNames = [
     // Append new JS string events here
 ];
 
+/**
+ Version of the compact event encoding (see setCompactEventEncoding) this decoder understands.
+ Must match CompactEventCodec.SCHEMA_VERSION on Android, the field lists below follow its layout.
+ */
+const COMPACT_EVENT_SCHEMA_VERSION = 1;
+
+const COMPACT_NOTIFICATION_FIELDS = ['isAppInFocus', 'shown', 'androidNotificationId', 'displayType', 'payload', 'groupedNotifications'];
+const COMPACT_PAYLOAD_FIELDS = ['notificationID', 'title', 'body', 'additionalData', 'smallIcon', 'largeIcon', 'bigPicture',
+    'smallIconAccentColor', 'launchURL', 'sound', 'ledColor', 'lockScreenVisibility', 'groupKey', 'groupMessage',
+    'actionButtons', 'fromProjectNumber', 'collapseId', 'priority', 'rawPayload'];
+const COMPACT_LIGHTWEIGHT_PAYLOAD_FIELDS = ['notificationID', 'title', 'body', 'groupKey'];
+const COMPACT_ACTION_BUTTON_FIELDS = ['id', 'text', 'icon'];
+const COMPACT_IN_APP_MESSAGE_FIELDS = ['click_name', 'click_url', 'first_click', 'closes_message'];
+
 var oneSignalEventEmitter;
 
 var _eventTypeHandler = new Map();
 var _notificationCache = new Map();
 var _listeners = [];
+var _deliveryLatencyTracing = false;
 
 if (RNOneSignal != null) {
     oneSignalEventEmitter = new NativeEventEmitter(RNOneSignal);
@@ -72,15 +87,85 @@ if (RNOneSignal != null) {
     }
 }
 
+// Positional values back into an object, null values are left out as they are in the map events
+function decodeFields(values, fields) {
+    var decoded = {};
+    for (var i = 0; i < fields.length; i++) {
+        if (values[i] !== null && values[i] !== undefined)
+            decoded[fields[i]] = values[i];
+    }
+    return decoded;
+}
+
+function decodePayload(values, fields) {
+    var payload = decodeFields(values, fields);
+    if (payload.actionButtons)
+        payload.actionButtons = payload.actionButtons.map((button) => decodeFields(button, COMPACT_ACTION_BUTTON_FIELDS));
+    return payload;
+}
+
+function decodeNotification(values, lightweight) {
+    var notification = decodeFields(values, COMPACT_NOTIFICATION_FIELDS);
+    notification.payload = decodePayload(notification.payload, lightweight ? COMPACT_LIGHTWEIGHT_PAYLOAD_FIELDS : COMPACT_PAYLOAD_FIELDS);
+    if (notification.groupedNotifications)
+        notification.groupedNotifications = notification.groupedNotifications.map((payload) => decodePayload(payload, COMPACT_PAYLOAD_FIELDS));
+    return notification;
+}
+
+// Compact events arrive as positional arrays (see CompactEventCodec), turn them back into the
+// regular object shape. The schema version has already been checked.
+function decodeEvent(type, event) {
+    if (!Array.isArray(event))
+        return event;
+
+    switch (type) {
+        case NOTIFICATION_RECEIVED_EVENT:
+            var notification = decodeNotification(event[1], event[2]);
+            if (event[2])
+                notification.lightweight = true;
+            return notification;
+        case NOTIFICATION_OPENED_EVENT:
+            var action = { type: event[3] };
+            if (event[2] !== null)
+                action.actionID = event[2];
+            return { action: action, notification: decodeNotification(event[1], false) };
+        case IN_APP_MESSAGE_CLICKED_EVENT:
+            return Object.assign(decodeFields(event.slice(1), COMPACT_IN_APP_MESSAGE_FIELDS), event[5]);
+        default:
+            return event;
+    }
+}
+
+// Final stamp of the delivery latency trace, see setDeliveryLatencyTracing
+function acknowledgeNotification(notification, receivedAt) {
+    var payload = notification && notification.payload;
+    if (payload && payload.notificationID)
+        RNOneSignal.acknowledgeNotification(payload.notificationID, receivedAt);
+}
+
 function handleEventBroadcast(type, broadcast) {
     return oneSignalEventEmitter.addListener(
-        broadcast, (notification) => {
+        broadcast, (event) => {
+            var receivedAt = Date.now();
+
+            // Handlers would get the wrong shape, the native side runs a different version of the library
+            if (Array.isArray(event) && event[0] !== COMPACT_EVENT_SCHEMA_VERSION) {
+                console.warn("OneSignal: dropped " + type + " event with unsupported compact schema version " + event[0]);
+                return;
+            }
+
+            var notification = decodeEvent(type, event);
+
             // Check if we have added listener for this type yet
             // Cache the result first if we have not.
             var handler = _eventTypeHandler.get(type);
 
             if (handler) {
                 handler(notification);
+
+                // Only notifications that reached a listener are acknowledged, after it ran
+                if (_deliveryLatencyTracing && type === NOTIFICATION_RECEIVED_EVENT)
+                    acknowledgeNotification(notification, receivedAt);
             } else {
                 _notificationCache.set(type, notification);
             }
@@ -403,6 +488,58 @@ export default class OneSignal {
         }
     }
 
+    // Cancels all the given Android notification ids in a single native call
+    static cancelNotifications(ids) {
+        if (!checkIfInitialized()) return;
+
+        if (Platform.OS === 'android') {
+            RNOneSignal.cancelNotifications(ids);
+        } else {
+            console.log("This function is not supported on iOS");
+        }
+    }
+
+    static cancelGroupedNotifications(groupKey) {
+        if (!checkIfInitialized()) return;
+
+        if (Platform.OS === 'android') {
+            RNOneSignal.cancelGroupedNotifications(groupKey);
+        } else {
+            console.log("This function is not supported on iOS");
+        }
+    }
+
+    // Cancels displayed notifications whose additionalData contains every key/value of the predicate.
+    // Only notifications received while the app process was alive can be matched. Values are compared
+    // with their JSON type, so "5" does not match 5.
+    // Returns a promise with the number of cancelled notifications, or -1 below Android 6.0 where the
+    // displayed notifications cannot be read and the matches are cancelled without knowing how many
+    // were still displayed.
+    static cancelNotificationsMatchingData(predicate) {
+        if (!checkIfInitialized()) return Promise.resolve();
+
+        if (Platform.OS === 'android') {
+            return RNOneSignal.cancelNotificationsMatchingData(predicate);
+        } else {
+            console.log("This function is not supported on iOS");
+            return Promise.resolve();
+        }
+    }
+
+    // Returns a promise with the OneSignal notifications currently displayed (Android 6.0+, empty below).
+    // Android does not record which library posted a notification, so only the notifications received
+    // while the app process was alive are recognised and returned, other notifications are left out.
+    static getDisplayedNotifications() {
+        if (!checkIfInitialized()) return Promise.resolve();
+
+        if (Platform.OS === 'android') {
+            return RNOneSignal.getDisplayedNotifications();
+        } else {
+            console.log("This function is not supported on iOS");
+            return Promise.resolve();
+        }
+    }
+
     //Sends MD5 and SHA1 hashes of the user's email address (https://documentation.onesignal.com/docs/ios-sdk-api#section-synchashedemail)
     static syncHashedEmail(email) {
         if (!checkIfInitialized()) return;
@@ -435,6 +572,8 @@ export default class OneSignal {
         return RNOneSignal.userProvidedPrivacyConsent();
     }
 
+    // On Android, a call made before init that is overridden by a different external user id call
+    // (also made before init) completes with { superseded: true } instead of the SDK result
     static setExternalUserId(externalId, callback) {
         if (!checkIfInitialized()) return;
 
@@ -535,4 +674,149 @@ export default class OneSignal {
 
         RNOneSignal.sendOutcomeWithValue(name, Number(value), callback);
     }
+
+    /**
+     * Event encoding
+     */
+
+    // Opt-in: send received, opened and inAppMessageClicked events as versioned positional arrays
+    // instead of nested maps, only additionalData keeps its keys. Handlers still receive the same
+    // object shape, without the keys whose value is null.
+    static setCompactEventEncoding(enabled) {
+        if (!checkIfInitialized()) return;
+
+        if (Platform.OS === 'android') {
+            RNOneSignal.setCompactEventEncoding(enabled);
+        } else {
+            console.log("This function is not supported on iOS");
+        }
+    }
+
+    // Opt-in: received events only carry the notification id, title, body and groupKey (plus
+    // `lightweight: true`). The full notification stays native, in an LRU store bounded to
+    // maxStoredPayloads entries, and is fetched with getNotificationPayload(notificationID).
+    static setLightweightReceivedEvents(enabled, maxStoredPayloads=100) {
+        if (!checkIfInitialized()) return;
+
+        if (Platform.OS === 'android') {
+            RNOneSignal.setLightweightReceivedEvents(enabled, maxStoredPayloads);
+        } else {
+            console.log("This function is not supported on iOS");
+        }
+    }
+
+    // Returns a promise with the full received notification, or null once it has been evicted
+    static getNotificationPayload(notificationId) {
+        if (!checkIfInitialized()) return Promise.resolve();
+
+        if (Platform.OS === 'android') {
+            return RNOneSignal.getNotificationPayload(notificationId);
+        } else {
+            console.log("This function is not supported on iOS");
+            return Promise.resolve();
+        }
+    }
+
+    /**
+     * Notification history
+     */
+
+    // Opt-in: record received and opened notifications in a native store. Values of the given
+    // additionalData keys are indexed and can be filtered on with dataKey/dataValue.
+    static enableNotificationHistory(indexedDataKeys=[]) {
+        if (!checkIfInitialized()) return;
+
+        if (Platform.OS === 'android') {
+            RNOneSignal.enableNotificationHistory(indexedDataKeys);
+        } else {
+            console.log("This function is not supported on iOS");
+        }
+    }
+
+    // options: { limit, cursor, groupKey, unreadOnly, dataKey, dataValue }
+    // Returns a promise with { notifications, nextCursor }, pass nextCursor back to get the next page
+    static queryNotificationHistory(options={}) {
+        if (!checkIfInitialized()) return Promise.resolve();
+
+        if (Platform.OS === 'android') {
+            return RNOneSignal.queryNotificationHistory(options);
+        } else {
+            console.log("This function is not supported on iOS");
+            return Promise.resolve();
+        }
+    }
+
+    // Returns a promise with the number of updated notifications
+    static markNotificationsRead(notificationIds, read=true) {
+        if (!checkIfInitialized()) return Promise.resolve();
+
+        if (Platform.OS === 'android') {
+            return RNOneSignal.markNotificationsRead(notificationIds, read);
+        } else {
+            console.log("This function is not supported on iOS");
+            return Promise.resolve();
+        }
+    }
+
+    // Returns a promise with the number of deleted notifications
+    static deleteNotificationsFromHistory(notificationIds) {
+        if (!checkIfInitialized()) return Promise.resolve();
+
+        if (Platform.OS === 'android') {
+            return RNOneSignal.deleteNotificationsFromHistory(notificationIds);
+        } else {
+            console.log("This function is not supported on iOS");
+            return Promise.resolve();
+        }
+    }
+
+    // Deletes notifications received before the given time (ms since epoch), or all when omitted
+    static clearNotificationHistory(receivedBefore=0) {
+        if (!checkIfInitialized()) return Promise.resolve();
+
+        if (Platform.OS === 'android') {
+            return RNOneSignal.clearNotificationHistory(Number(receivedBefore));
+        } else {
+            console.log("This function is not supported on iOS");
+            return Promise.resolve();
+        }
+    }
+
+    /**
+     * Diagnostics
+     */
+
+    // Opt-in: stamp received notifications from server send time to the JS listener
+    static setDeliveryLatencyTracing(enabled) {
+        if (!checkIfInitialized()) return;
+
+        if (Platform.OS === 'android') {
+            _deliveryLatencyTracing = !!enabled;
+            RNOneSignal.setDeliveryLatencyTracing(_deliveryLatencyTracing);
+        } else {
+            console.log("This function is not supported on iOS");
+        }
+    }
+
+    // Returns a promise with per stage (fcm, sdk, conversion, emit, js, total) latency percentiles in microseconds
+    static getDeliveryLatencyStats() {
+        if (!checkIfInitialized()) return Promise.resolve();
+
+        if (Platform.OS === 'android') {
+            return RNOneSignal.getDeliveryLatencyStats();
+        } else {
+            console.log("This function is not supported on iOS");
+            return Promise.resolve();
+        }
+    }
+
+    static resetDeliveryLatencyStats() {
+        if (!checkIfInitialized()) return;
+
+        if (Platform.OS === 'android') {
+            RNOneSignal.resetDeliveryLatencyStats();
+        } else {
+            console.log("This function is not supported on iOS");
+        }
+    }
 }